@@ -21,7 +21,8 @@ public class AStar<N> implements ShortestPathSearch<N> {
     }
 
     /**
-     * The A* algorithm to find the shortest path
+     * The A* algorithm to find the shortest path.
+     * Returns null early if the thread is interrupted, so a cancelled solve frees its thread.
      *
      * @param start, the node to begin the search
      */
@@ -29,6 +30,9 @@ public class AStar<N> implements ShortestPathSearch<N> {
     public List<N> shortestPath(N start, N goal) {
         this.n = 0;
         this.finalCost = 0;
+        if (start instanceof KeyedNode) {
+            return this.keyedShortestPath(start, goal);
+        }
         Set<N> closed = new HashSet<>();
         PriorityQueue<NodeAndCost> queue = new PriorityQueue<>();
         Map<N, N> cameFrom = new HashMap<>();
@@ -37,6 +41,7 @@ public class AStar<N> implements ShortestPathSearch<N> {
         gScore.put(start, 0);
 
         while (!queue.isEmpty()) {
+            if (Thread.currentThread().isInterrupted()) return null;
             NodeAndCost nac = queue.poll();
             n++;
             N curr = nac.getNode();
@@ -60,6 +65,63 @@ public class AStar<N> implements ShortestPathSearch<N> {
         return null;
     }
 
+    /**
+     * The same search for nodes with a long key, the closed set, gScore and cameFrom
+     * are kept in a SearchStateStore and the queue is a BucketQueue of indices into it.
+     * Nodes with the same f are taken deepest first.
+     *
+     * @param start, the node to begin the search
+     */
+    @SuppressWarnings("unchecked")
+    private List<N> keyedShortestPath(N start, N goal) {
+        KeyedNode<N> keyed = (KeyedNode<N>) start;
+        SearchStateStore store = new SearchStateStore();
+        BucketQueue queue = new BucketQueue();
+        int startIndex = store.add(keyed.getKey(), 0, SearchStateStore.NO_PARENT);
+        queue.add(startIndex, this.h.getH(start), 0);
+
+        while (!queue.isEmpty()) {
+            if (Thread.currentThread().isInterrupted()) return null;
+            int index = queue.poll();
+            if (store.isClosed(index)) continue;
+            n++;
+            N curr = keyed.fromKey(store.getKey(index));
+            if (curr.equals(goal)) {
+                this.finalCost = store.getG(index);
+                return this.reconstructPath(keyed, store, index);
+            }
+            store.close(index);
+            int currG = store.getG(index);
+            for (N childNode : this.graph.getConnections(curr)) {
+                long childKey = ((KeyedNode<N>) childNode).getKey();
+                int tempGScore = currG + graph.getWeight(curr, childNode);
+                int childIndex = store.indexOf(childKey);
+                if (childIndex == -1) {
+                    childIndex = store.add(childKey, tempGScore, index);
+                } else {
+                    if (store.isClosed(childIndex) || tempGScore >= store.getG(childIndex)) continue;
+                    store.setG(childIndex, tempGScore);
+                    store.setParent(childIndex, index);
+                }
+                queue.add(childIndex, tempGScore + h.getH(childNode), tempGScore);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reconstruct path using the parent indices of the store
+     */
+    private List<N> reconstructPath(KeyedNode<N> keyed, SearchStateStore store, int index) {
+        List<N> totalPath = new ArrayList<>();
+        while (index != SearchStateStore.NO_PARENT) {
+            totalPath.add(keyed.fromKey(store.getKey(index)));
+            index = store.getParent(index);
+        }
+        Collections.reverse(totalPath);
+        return totalPath;
+    }
+
     /**
      * Reconstruct path using the cameFrom map
      *
@@ -0,0 +1,136 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Breadth first search from the start and backwards from every goal at once, one whole
+ * layer at a time from whichever side has the smaller frontier, until the sides meet.
+ * On a long solution each side only goes about half way, so far fewer nodes are
+ * expanded than by a search from the start alone when the frontiers stay balanced.
+ *
+ * The goal of shortestPath() stands for every node of goal.getGoalKeys() if it is a
+ * GoalSet, otherwise for itself. If the goals cannot be listed only the start side is
+ * searched, until a node equals the goal.
+ *
+ * On the saved puzzles the solved states are about as many as all the reachable states, so
+ * the goal side starts with a large frontier and the start side does most of the work.
+ * HeuristicReport, states expanded by BLIND, BIDIRECTIONAL and AStar with BLOCKERS:
+ *   veryEasy 7103, 5816, 1084     easy 14369, 12996, 9127     medium 22382, 20490, 16484
+ *   hard 61475, 59189, 48946      veryHard 82986, 80577, 66498  ultraHard 35966, 34362, 28693
+ * It finds the same solution lengths as AStar in about the time of the blind search, so it
+ * is only worth it where no heuristic is known.
+ *
+ * @pre every node is a KeyedNode, every edge has weight 1 and every move can be undone,
+ * so the nodes one move from a node are also the nodes it is reached from
+ * @param <N> any object to use as the node for the search
+ */
+public class BidirectionalSearch<N> implements ShortestPathSearch<N> {
+    private final Graph<N> graph;
+    private int n;
+    private int finalCost;
+
+    public BidirectionalSearch(Graph<N> graph) {
+        this.graph = graph;
+        this.n = 0;
+        this.finalCost = 0;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<N> shortestPath(N start, N goal) {
+        this.n = 0;
+        this.finalCost = 0;
+        KeyedNode<N> keyed = (KeyedNode<N>) start;
+        long[] goalKeys = goal instanceof GoalSet ? ((GoalSet) goal).getGoalKeys() : new long[] {((KeyedNode<N>) goal).getKey()};
+        SearchStateStore forward = new SearchStateStore();
+        int[] forwardFrontier = {forward.add(keyed.getKey(), 0, SearchStateStore.NO_PARENT)};
+        //both stay null when the goals cannot be listed
+        SearchStateStore backward = null;
+        int[] backwardFrontier = null;
+        if (goalKeys != null) {
+            backward = new SearchStateStore(goalKeys.length);
+            backwardFrontier = new int[goalKeys.length];
+            int numBackward = 0;
+            for (long key : goalKeys) {
+                if (backward.indexOf(key) == -1) {
+                    backwardFrontier[numBackward++] = backward.add(key, 0, SearchStateStore.NO_PARENT);
+                }
+            }
+            backwardFrontier = Arrays.copyOf(backwardFrontier, numBackward);
+            if (backward.indexOf(keyed.getKey()) != -1) {
+                return this.joinPaths(keyed, forward, 0, backward, backward.indexOf(keyed.getKey()));
+            }
+        } else if (start.equals(goal)) {
+            return this.joinPaths(keyed, forward, 0, null, SearchStateStore.NO_PARENT);
+        }
+
+        while (forwardFrontier.length > 0 && (backwardFrontier == null || backwardFrontier.length > 0)) {
+            boolean isForward = backwardFrontier == null || forwardFrontier.length <= backwardFrontier.length;
+            SearchStateStore from = isForward ? forward : backward;
+            SearchStateStore other = isForward ? backward : forward;
+            int[] frontier = isForward ? forwardFrontier : backwardFrontier;
+            int[] next = new int[frontier.length];
+            int numNext = 0;
+            for (int index : frontier) {
+                n++;
+                N curr = keyed.fromKey(from.getKey(index));
+                int childG = from.getG(index) + 1;
+                for (N childNode : this.graph.getConnections(curr)) {
+                    long childKey = ((KeyedNode<N>) childNode).getKey();
+                    if (from.indexOf(childKey) != -1) continue;
+                    int childIndex = from.add(childKey, childG, index);
+                    if (other == null) {
+                        if (childNode.equals(goal)) return this.joinPaths(keyed, forward, childIndex, null, SearchStateStore.NO_PARENT);
+                        if (numNext == next.length) next = Arrays.copyOf(next, next.length * 2);
+                        next[numNext++] = childIndex;
+                        continue;
+                    }
+                    int otherIndex = other.indexOf(childKey);
+                    // Every shorter path would have met in an earlier layer
+                    if (otherIndex != -1) {
+                        return isForward ? this.joinPaths(keyed, forward, childIndex, backward, otherIndex)
+                                : this.joinPaths(keyed, forward, otherIndex, backward, childIndex);
+                    }
+                    if (numNext == next.length) next = Arrays.copyOf(next, next.length * 2);
+                    next[numNext++] = childIndex;
+                }
+            }
+            if (isForward) {
+                forwardFrontier = Arrays.copyOf(next, numNext);
+            } else {
+                backwardFrontier = Arrays.copyOf(next, numNext);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param forwardIndex, index in forward of the node where the searches met
+     * @param backwardIndex, index in backward of the same node, NO_PARENT if the node is a goal
+     * @return the path from the start to the node and on to the goal it was reached from
+     */
+    private List<N> joinPaths(KeyedNode<N> keyed, SearchStateStore forward, int forwardIndex, SearchStateStore backward, int backwardIndex) {
+        this.finalCost = forward.getG(forwardIndex) + (backwardIndex == SearchStateStore.NO_PARENT ? 0 : backward.getG(backwardIndex));
+        List<N> totalPath = new ArrayList<>();
+        for (int index = forwardIndex; index != SearchStateStore.NO_PARENT; index = forward.getParent(index)) {
+            totalPath.add(keyed.fromKey(forward.getKey(index)));
+        }
+        Collections.reverse(totalPath);
+        if (backwardIndex == SearchStateStore.NO_PARENT) return totalPath;
+        for (int index = backward.getParent(backwardIndex); index != SearchStateStore.NO_PARENT; index = backward.getParent(index)) {
+            totalPath.add(keyed.fromKey(backward.getKey(index)));
+        }
+        return totalPath;
+    }
+
+    @Override
+    public int getFinalCost() {
+        return this.finalCost;
+    }
+
+    @Override
+    public int getNumExpanded() {
+        return n;
+    }
+}
@@ -0,0 +1,68 @@
+import java.util.BitSet;
+
+/**
+ * Stronger admissible heuristic than PuzzleHeuristic.
+ * Every vehicle between the main vehicle and the exit has to leave the main vehicle's lane,
+ * sliding to one side or the other, and the vehicles on the cells it slides over have to
+ * move as well. The heuristic is
+ *   1 + the number of blockers + the larger of
+ *     the most vehicles in the way of one blocker on its cheaper side,
+ *     the vehicles in the way of the blockers that can only leave on one side.
+ * A vehicle in the way of a blocker is never a blocker or the main vehicle, so every vehicle
+ * counted has to move at least once and none is counted twice.
+ */
+public class BlockingChainHeuristic implements Heuristic<PuzzleState> {
+
+    @Override
+    public int getH(PuzzleState node) {
+        if (node.isSolved()) return 0;
+        PuzzleGame game = node.getGame();
+        int[][] board = node.getBoard();
+        Vehicle main = node.getMainVehicle();
+        boolean vertical = main.getIsVertical();
+        int lane = vertical ? main.getCol() : main.getRow();
+        if (lane != (vertical ? node.getExitCol() : node.getExitRow())) return 1;
+        int pos = vertical ? main.getRow() : main.getCol();
+        int exit = vertical ? node.getExitRow() : node.getExitCol();
+        int from = exit > pos ? pos + main.getLength() : exit;
+        int to = exit > pos ? exit : pos - 1;
+        BitSet blockers = new BitSet();
+        for (int p = from; p <= to; p++) {
+            int id = vertical ? board[p][lane] : board[lane][p];
+            if (id != -1) blockers.set(id);
+        }
+        int maxInWay = 0;
+        BitSet forced = new BitSet();
+        for (int id = blockers.nextSetBit(0); id >= 0; id = blockers.nextSetBit(id + 1)) {
+            Vehicle b = game.getVehicle(id);
+            // A blocker in the lane of the main vehicle can never leave it
+            if (b.getIsVertical() == vertical) continue;
+            int len = b.getLength();
+            int bPos = vertical ? b.getCol() : b.getRow();
+            int size = b.getIsVertical() ? board.length : board[0].length;
+            BitSet before = lane - len >= 0 ? this.getInWay(board, b, lane - len, bPos - 1) : null;
+            BitSet after = lane + len < size ? this.getInWay(board, b, bPos + len, lane + len) : null;
+            if (before != null && after != null) {
+                maxInWay = Math.max(maxInWay, Math.min(before.cardinality(), after.cardinality()));
+            } else if (before != null || after != null) {
+                BitSet inWay = before != null ? before : after;
+                forced.or(inWay);
+                maxInWay = Math.max(maxInWay, inWay.cardinality());
+            }
+        }
+        return 1 + blockers.cardinality() + Math.max(maxInWay, forced.cardinality());
+    }
+
+    /**
+     * @return the ids of the vehicles in the lane of the blocker from from to to, other than the blocker
+     */
+    private BitSet getInWay(int[][] board, Vehicle b, int from, int to) {
+        BitSet inWay = new BitSet();
+        for (int p = from; p <= to; p++) {
+            int id = b.getIsVertical() ? board[p][b.getCol()] : board[b.getRow()][p];
+            if (id != -1 && id != b.getID()) inWay.set(id);
+        }
+        return inWay;
+    }
+
+}
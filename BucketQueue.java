@@ -0,0 +1,87 @@
+import java.util.Arrays;
+
+/**
+ * Priority queue of int handles for searches whose costs are small non-negative integers.
+ * Every cost has a bucket, and every bucket keeps a stack per g, so adding and taking a
+ * handle is a few array accesses instead of a heap operation and an object.
+ * Takes the lowest f first, and of those the highest g, which is the handle nearest the goal.
+ */
+public class BucketQueue {
+    private static final int INITIAL_BUCKETS = 64;
+    private static final int INITIAL_STACK_SIZE = 16;
+    //handles, by f then g
+    private int[][][] stacks;
+    private int[][] sizes;
+    //the highest g added to each bucket since it was empty
+    private int[] maxG;
+    //no bucket below it has handles
+    private int minF;
+    private int size;
+
+    public BucketQueue() {
+        this.stacks = new int[INITIAL_BUCKETS][][];
+        this.sizes = new int[INITIAL_BUCKETS][];
+        this.maxG = new int[INITIAL_BUCKETS];
+        this.minF = 0;
+        this.size = 0;
+    }
+
+    /**
+     * @pre 0 <= g <= f
+     * @param handle
+     * @param f, the cost plus heuristic of the handle
+     * @param g, the cost of the handle
+     */
+    public void add(int handle, int f, int g) {
+        if (f >= this.stacks.length) {
+            int length = Math.max(f + 1, this.stacks.length * 2);
+            this.stacks = Arrays.copyOf(this.stacks, length);
+            this.sizes = Arrays.copyOf(this.sizes, length);
+            this.maxG = Arrays.copyOf(this.maxG, length);
+        }
+        if (this.stacks[f] == null || g >= this.stacks[f].length) {
+            int length = Math.max(f + 1, g + 1);
+            this.stacks[f] = this.stacks[f] == null ? new int[length][] : Arrays.copyOf(this.stacks[f], length);
+            this.sizes[f] = this.sizes[f] == null ? new int[length] : Arrays.copyOf(this.sizes[f], length);
+        }
+        int[] stack = this.stacks[f][g];
+        int stackSize = this.sizes[f][g];
+        if (stack == null) {
+            stack = this.stacks[f][g] = new int[INITIAL_STACK_SIZE];
+        } else if (stackSize == stack.length) {
+            stack = this.stacks[f][g] = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[stackSize] = handle;
+        this.sizes[f][g] = stackSize + 1;
+        this.maxG[f] = Math.max(this.maxG[f], g);
+        this.minF = Math.min(this.minF, f);
+        this.size++;
+    }
+
+    /**
+     * @pre !isEmpty()
+     * @return the handle with the lowest f and, of those, the highest g
+     */
+    public int poll() {
+        while (this.sizes[this.minF] == null || this.sizes[this.minF][this.maxG[this.minF]] == 0) {
+            int[] bucket = this.sizes[this.minF];
+            if (bucket != null && this.maxG[this.minF] > 0) {
+                this.maxG[this.minF]--;
+            } else {
+                this.minF++;
+            }
+        }
+        int f = this.minF;
+        int g = this.maxG[f];
+        this.size--;
+        return this.stacks[f][g][--this.sizes[f][g]];
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+}
@@ -9,6 +9,7 @@ public class ButtonPanel extends JPanel {
     private JButton RedoBtn;
     private JButton UndoBtn;
     private JButton jResetBtn;
+    private JButton HintBtn;
     private JLabel jTimeLabel;
     private Timer timer;
     private int cellSize;
@@ -30,6 +31,7 @@ public class ButtonPanel extends JPanel {
         MoveCount = new JLabel(label);
         UndoBtn = new JButton(button);
         RedoBtn = new JButton(button);
+        HintBtn = new JButton(button);
         menuButton = new JButton(button);
         this.setOpaque(false);
 
@@ -39,6 +41,7 @@ public class ButtonPanel extends JPanel {
         jResetBtn.setText("Reset");
         UndoBtn.setText("Undo");
         RedoBtn.setText("Redo");
+        HintBtn.setText("Hint");
         menuButton.setText("Menu");
 
         menuButton.setBorder(BorderFactory.createEmptyBorder());
@@ -47,6 +50,7 @@ public class ButtonPanel extends JPanel {
         jResetBtn.setBorder(BorderFactory.createEmptyBorder());
         UndoBtn.setBorder(BorderFactory.createEmptyBorder());
         RedoBtn.setBorder(BorderFactory.createEmptyBorder());
+        HintBtn.setBorder(BorderFactory.createEmptyBorder());
 
         menuButton.setHorizontalTextPosition(JButton.CENTER);
         jTimeLabel.setHorizontalTextPosition(JButton.CENTER);
@@ -54,6 +58,7 @@ public class ButtonPanel extends JPanel {
         jResetBtn.setHorizontalTextPosition(JButton.CENTER);
         UndoBtn.setHorizontalTextPosition(JButton.CENTER);
         RedoBtn.setHorizontalTextPosition(JButton.CENTER);
+        HintBtn.setHorizontalTextPosition(JButton.CENTER);
 
         menuButton.setVerticalTextPosition(JButton.CENTER);
         jTimeLabel.setVerticalTextPosition(JButton.CENTER);
@@ -61,6 +66,7 @@ public class ButtonPanel extends JPanel {
         jResetBtn.setVerticalTextPosition(JButton.CENTER);
         UndoBtn.setVerticalTextPosition(JButton.CENTER);
         RedoBtn.setVerticalTextPosition(JButton.CENTER);
+        HintBtn.setVerticalTextPosition(JButton.CENTER);
 
 
         menuButton.setFont(new Font("Arial", Font.PLAIN, cellSize/4));
@@ -69,11 +75,13 @@ public class ButtonPanel extends JPanel {
         jResetBtn.setFont(new Font("Arial", Font.PLAIN, cellSize/4));
         UndoBtn.setFont(new Font("Arial", Font.PLAIN, cellSize/4));
         RedoBtn.setFont(new Font("Arial", Font.PLAIN, cellSize/4));
+        HintBtn.setFont(new Font("Arial", Font.PLAIN, cellSize/4));
 
         menuButton.setForeground(new Color(245,222,179));
         jResetBtn.setForeground(new Color(245,222,179));
         UndoBtn.setForeground(new Color(245,222,179));
         RedoBtn.setForeground(new Color(245,222,179));
+        HintBtn.setForeground(new Color(245,222,179));
 
 
 
@@ -113,12 +121,17 @@ public class ButtonPanel extends JPanel {
         c.gridx = 0;
         c.gridy = 5;
         this.add(jResetBtn, c);
+
+        c.gridx = 0;
+        c.gridy = 6;
+        this.add(HintBtn, c);
     }
 
     public void setController(ButtonController c) {
         this.RedoBtn.addActionListener(c.getRedoButtonListener());
         this.UndoBtn.addActionListener(c.getUndoButtonListener());
         this.jResetBtn.addActionListener(c.getResetButtonListener());
+        this.HintBtn.addActionListener(c.getHintButtonListener());
         this.menuButton.addActionListener(c.getMenuButtonListener());
         this.timer = new Timer(1000, c.getTimerListener());
         this.startTimer();
@@ -140,6 +153,10 @@ public class ButtonPanel extends JPanel {
         MoveCount.setText("Moves: " + Integer.toString(moves));
     }
 
+    public void setHintVisible(boolean visible){
+        HintBtn.setVisible(visible);
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
@@ -0,0 +1,52 @@
+import java.io.IOException;
+
+/**
+ * A logged in client the event handler can send messages to.
+ * Sent lines are buffered until flush(), so several messages cost a single write.
+ * Once useBinary() is called the messages are sent as WireProtocol frames instead of lines.
+ */
+public interface ClientConnection {
+    //a client that stops reading is disconnected once this many flushed bytes wait to be written,
+    //set with -Dgridlock.maxPendingBytes
+    public static final int MAX_PENDING_BYTES = Integer.getInteger("gridlock.maxPendingBytes", 1 << 20);
+
+    /**
+     * Buffer one line for the client, can be called from any thread.
+     * @param message, the line without the line separator
+     * @throws IOException if the connection is broken
+     */
+    public void send(String message) throws IOException;
+
+    /**
+     * Buffer a puzzle for the client, the "puzzle" line or a PUZZLE frame.
+     * @param puzzle
+     * @throws IOException if the connection is broken
+     */
+    public void sendPuzzle(PuzzleCatalog.Entry puzzle) throws IOException;
+
+    /**
+     * Buffer the moves of the opponent, the "oppmoves" line or a MOVES frame.
+     * The bytes are copied, the caller may reuse the array.
+     * @param moves, vehicleId, row, col of every move
+     * @param length, the number of bytes of moves to send
+     * @throws IOException if the connection is broken
+     */
+    public void sendMoves(byte[] moves, int length) throws IOException;
+
+    /**
+     * Send framed messages from now on, the client asked for them at the handshake.
+     */
+    public void useBinary();
+
+    /**
+     * Write every line sent since the last flush, can be called from any thread.
+     * @throws IOException if the connection is broken, or the client is more than
+     * MAX_PENDING_BYTES behind and is disconnected
+     */
+    public void flush() throws IOException;
+
+    /**
+     * Flush and close the connection once everything sent has been written.
+     */
+    public void close();
+}
@@ -1,4 +1,8 @@
 
+/**
+ * The state of a user. The methods are synchronized since the events of the two players
+ * of a match can be handled on different threads, see ShardedEventHandler.
+ */
 public class ClientInfo {
 //	private BlockingQueue sendQueue = null;
 	private String name;
@@ -7,16 +11,18 @@ public class ClientInfo {
 	private String playingAgainst;
 	private int wins;
 	private int losses;
+	//the puzzle of the current match as the server sees it, null when not in a match
+	private MatchBoard board;
 
-	public void setBusy(boolean busy) {
+	public synchronized void setBusy(boolean busy) {
 		this.busy = busy;
 	}
 
-	public void setOnline(boolean online) {
+	public synchronized void setOnline(boolean online) {
 		isOnline = online;
 	}
 
-	public void setPlayingAgainst(String playingAgainst) {
+	public synchronized void setPlayingAgainst(String playingAgainst) {
 		this.playingAgainst = playingAgainst;
 	}
 
@@ -28,36 +34,44 @@ public class ClientInfo {
 
 	}
 
-	public String getName() {
+	public synchronized String getName() {
 		return name;
 	}
 
-	public boolean isBusy() {
+	public synchronized boolean isBusy() {
 		return busy;
 	}
 
-	public String getPlayingAgainst() {
+	public synchronized String getPlayingAgainst() {
 		return playingAgainst;
 	}
 
-	public void resetPlayingAgainst(){
+	public synchronized void resetPlayingAgainst(){
 		this.playingAgainst = null;
 	}
 
-	public int getWins(){
+	public synchronized int getWins(){
 		return wins;
 	}
 
-	public int getLosses(){
+	public synchronized int getLosses(){
 		return losses;
 	}
 
-	public void incrementWins(){
+	public synchronized void incrementWins(){
 		this.wins ++;
 	}
 
-	public void incrementLosses(){
+	public synchronized void incrementLosses(){
 		this.losses ++;
 	}
 
+	public synchronized MatchBoard getBoard(){
+		return board;
+	}
+
+	public synchronized void setBoard(MatchBoard board){
+		this.board = board;
+	}
+
 }
@@ -0,0 +1,93 @@
+import java.util.Arrays;
+
+/**
+ * Same heuristic as BlockingChainHeuristic, calculated from the packed state.
+ * Every getH fills one cell to vehicle index and looks the blockers and the vehicles in
+ * their way up in it, so an instance must only be used by one search at a time.
+ */
+public class CompactBlockingChainHeuristic implements Heuristic<CompactPuzzleState> {
+    //index of the vehicle on each cell, -1 if the cell is empty, refilled by every getH
+    private int[] owner = new int[0];
+
+    @Override
+    public int getH(CompactPuzzleState node) {
+        if (node.isSolved()) return 0;
+        PuzzleLayout layout = node.getLayout();
+        if (!layout.canReachExit()) return 1;
+        long key = node.getKey();
+        this.fillOwners(layout, key);
+        int main = layout.getMainIndex();
+        int lane = layout.getLane(main);
+        int pos = layout.getPos(key, main);
+        int exit = layout.isVertical(main) ? layout.getExitRow() : layout.getExitCol();
+        // The vehicles on the cells between the main vehicle and the exit
+        long blocking = exit > pos ? this.getVehicles(layout, main, pos + layout.getLength(main), exit) : this.getVehicles(layout, main, exit, pos - 1);
+        blocking &= ~(1L << main);
+        int blockers = Long.bitCount(blocking);
+        int maxInWay = 0;
+        long forced = 0;
+        for (long rest = blocking; rest != 0; rest &= rest - 1) {
+            int i = Long.numberOfTrailingZeros(rest);
+            // A blocker in the lane of the main vehicle can never leave it
+            if (layout.isVertical(i) == layout.isVertical(main)) continue;
+            int len = layout.getLength(i);
+            int bPos = layout.getPos(key, i);
+            int size = layout.isVertical(i) ? layout.getNumRows() : layout.getNumCols();
+            boolean canLeaveBefore = lane - len >= 0;
+            boolean canLeaveAfter = lane + len < size;
+            long others = ~(1L << main | 1L << i);
+            long before = canLeaveBefore ? this.getVehicles(layout, i, lane - len, bPos - 1) & others : 0;
+            long after = canLeaveAfter ? this.getVehicles(layout, i, bPos + len, lane + len) & others : 0;
+            if (canLeaveBefore && canLeaveAfter) {
+                maxInWay = Math.max(maxInWay, Math.min(Long.bitCount(before), Long.bitCount(after)));
+            } else if (canLeaveBefore || canLeaveAfter) {
+                long inWay = canLeaveBefore ? before : after;
+                forced |= inWay;
+                maxInWay = Math.max(maxInWay, Long.bitCount(inWay));
+            }
+        }
+        return 1 + blockers + Math.max(maxInWay, Long.bitCount(forced));
+    }
+
+    /**
+     * Fill owner with the vehicles of the state, cells of the main vehicle outside the board are left out
+     */
+    private void fillOwners(PuzzleLayout layout, long key) {
+        int numRows = layout.getNumRows();
+        int numCols = layout.getNumCols();
+        if (this.owner.length != numRows * numCols) {
+            this.owner = new int[numRows * numCols];
+        }
+        Arrays.fill(this.owner, -1);
+        for (int i = 0; i < layout.getNumVehicles(); i++) {
+            int lane = layout.getLane(i);
+            int pos = layout.getPos(key, i);
+            boolean vertical = layout.isVertical(i);
+            int size = vertical ? numRows : numCols;
+            for (int p = Math.max(0, pos); p < Math.min(size, pos + layout.getLength(i)); p++) {
+                this.owner[vertical ? p * numCols + lane : lane * numCols + p] = i;
+            }
+        }
+    }
+
+    /**
+     * @param i, index of the vehicle whose lane is looked at
+     * @param from, the first row of a vertical vehicle's column or column of a horizontal vehicle's row
+     * @param to, the last row or column
+     * @return a bitmask of the indices of the vehicles on the cells of the lane from from to to,
+     * cells outside the board are left out
+     */
+    private long getVehicles(PuzzleLayout layout, int i, int from, int to) {
+        int numCols = layout.getNumCols();
+        int lane = layout.getLane(i);
+        boolean vertical = layout.isVertical(i);
+        int last = Math.min(to, (vertical ? layout.getNumRows() : numCols) - 1);
+        long vehicles = 0;
+        for (int p = Math.max(0, from); p <= last; p++) {
+            int v = this.owner[vertical ? p * numCols + lane : lane * numCols + p];
+            if (v != -1) vehicles |= 1L << v;
+        }
+        return vehicles;
+    }
+
+}
@@ -0,0 +1,91 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves and loads puzzles in the CompactPuzzleFormat, one .gpz file per puzzle.
+ * Use PuzzleFileMigrator to convert folders of .sav files from FileSystemImp.
+ */
+public class CompactFileSystem implements FileSystem {
+	public static final String EXTENSION = ".gpz";
+
+	public CompactFileSystem() {
+	}
+
+	@Override
+	public void savePuzzlesToFolder(List<PuzzleGame> puzzles, String folderPath) {
+		try {
+			File folder = new File(folderPath);
+			for(PuzzleGame puzzle : puzzles) {
+				File file = new File(folderPath, folder.getName() + String.format("%d", puzzle.getId()));
+				this.savePuzzleGame(puzzle, file.getPath());
+			}
+		} catch(NullPointerException e) {
+			System.out.print("Cannot access folder ");
+			if(folderPath != null) System.out.printf("%s",folderPath);
+			System.out.println("");
+		}
+	}
+
+	/**
+	 * The .gpz extension is added to the filename.
+	 */
+	@Override
+	public void savePuzzleGame(PuzzleGame puzzle, String filename) {
+		int size = CompactPuzzleFormat.HEADER_SIZE + CompactPuzzleFormat.getRecordSize(puzzle.getVehicles().size());
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		CompactPuzzleFormat.writeHeader(buffer);
+		CompactPuzzleFormat.writePuzzle(puzzle, buffer);
+		try {
+			Files.write(Paths.get(filename + EXTENSION), buffer.array());
+		} catch (IOException e) {
+			System.out.println("Error writing " + filename + EXTENSION);
+		}
+	}
+
+	/**
+	 * Only the .gpz files in the folder are loaded.
+	 */
+	@Override
+	public List<PuzzleGame> loadPuzzlesFromFolder(String folderPath) {
+		try {
+			List<PuzzleGame> puzzles = new ArrayList<PuzzleGame>();
+			File folder = new File(folderPath);
+			for(File f : folder.listFiles()) {
+				if(!f.getName().endsWith(EXTENSION)) continue;
+				PuzzleGame puzzle = this.loadPuzzleGame(f.getPath());
+				if(puzzle != null) puzzles.add(puzzle);
+			}
+			return puzzles;
+		} catch(NullPointerException e) {
+			System.out.print("Cannot access folder ");
+			if(folderPath != null) System.out.printf("%s",folderPath);
+			System.out.println("");
+		}
+		return null;
+	}
+
+	/**
+	 * Same as FileSystemImp the filename includes the extension.
+	 * @param filename name of the file
+	 * @return the puzzleGame stored in that file, null if it cannot be read
+	 */
+	@Override
+	public PuzzleGame loadPuzzleGame(String filename) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(filename)));
+			CompactPuzzleFormat.readHeader(buffer);
+			return CompactPuzzleFormat.readPuzzle(buffer);
+		} catch (NoSuchFileException e) {
+			System.out.println("File not found");
+		} catch (IOException e) {
+			System.out.println("Error reading " + filename + ": " + e.getMessage());
+		}
+		return null;
+	}
+}
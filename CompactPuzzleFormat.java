@@ -0,0 +1,135 @@
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Versioned binary format for puzzles, a few dozen bytes instead of a serialized SaveFile.
+ *
+ * A file starts with a header: the magic number and a version byte.
+ * A puzzle record is
+ *   int id, byte rows, byte cols, byte exitRow, byte exitCol, short minMoves,
+ *   byte numVehicles, then for every vehicle in id order
+ *   byte (length << 1 | isVertical), byte row, byte col, int rgb colour.
+ * Vehicle ids are not stored, the vehicles are numbered from 0 in the order they are read.
+ */
+public class CompactPuzzleFormat {
+	//"GLPZ"
+	public static final int MAGIC = 0x474C505A;
+	public static final byte VERSION = 1;
+	public static final int HEADER_SIZE = Integer.BYTES + Byte.BYTES;
+	private static final int PUZZLE_SIZE = Integer.BYTES + 4 * Byte.BYTES + Short.BYTES + Byte.BYTES;
+	//position of the fields that can be read without decoding the puzzle
+	private static final int ID_OFFSET = 0;
+	private static final int MIN_MOVES_OFFSET = Integer.BYTES + 4 * Byte.BYTES;
+	private static final int VEHICLE_SIZE = 3 * Byte.BYTES + Integer.BYTES;
+
+	private CompactPuzzleFormat() {
+	}
+
+	/**
+	 * @param numVehicles
+	 * @return the number of bytes of a record of a puzzle with numVehicles vehicles
+	 */
+	public static int getRecordSize(int numVehicles) {
+		return PUZZLE_SIZE + numVehicles * VEHICLE_SIZE;
+	}
+
+	public static void writeHeader(ByteBuffer out) {
+		out.putInt(MAGIC);
+		out.put(VERSION);
+	}
+
+	/**
+	 * Read and check the header.
+	 * @param in
+	 * @throws IOException if the data is not in this format or has an unknown version
+	 */
+	public static void readHeader(ByteBuffer in) throws IOException {
+		if (in.remaining() < HEADER_SIZE || in.getInt() != MAGIC) {
+			throw new IOException("Not a compact puzzle file");
+		}
+		byte version = in.get();
+		if (version != VERSION) {
+			throw new IOException("Unsupported compact puzzle version " + version);
+		}
+	}
+
+	/**
+	 * Write the puzzle as it is now, moves made on it are not kept.
+	 * @pre out.remaining() >= getRecordSize(puzzle.getVehicles().size())
+	 * @post true
+	 * @param puzzle
+	 * @param out
+	 */
+	public static void writePuzzle(PuzzleGame puzzle, ByteBuffer out) {
+		List<Vehicle> vehicles = new ArrayList<>(puzzle.getVehicles());
+		vehicles.sort(Comparator.comparingInt(Vehicle::getID));
+		out.putInt(puzzle.getId());
+		out.put((byte) puzzle.getNumRows());
+		out.put((byte) puzzle.getNumCols());
+		out.put((byte) puzzle.getExitRow());
+		out.put((byte) puzzle.getExitCol());
+		out.putShort((short) puzzle.getMinMoves());
+		out.put((byte) vehicles.size());
+		for (Vehicle v : vehicles) {
+			out.put((byte) (v.getLength() << 1 | (v.getIsVertical() ? 1 : 0)));
+			out.put((byte) v.getRow());
+			out.put((byte) v.getCol());
+			out.putInt(v.getColor() == null ? Color.ORANGE.getRGB() : v.getColor().getRGB());
+		}
+	}
+
+	/**
+	 * @param in
+	 * @param offset, position of a puzzle record
+	 * @return the id of the puzzle, the position of in is not changed
+	 */
+	public static int getId(ByteBuffer in, int offset) {
+		return in.getInt(offset + ID_OFFSET);
+	}
+
+	/**
+	 * @param in
+	 * @param offset, position of a puzzle record
+	 * @return the minimum number of moves of the puzzle, the position of in is not changed
+	 */
+	public static int getMinMoves(ByteBuffer in, int offset) {
+		return in.getShort(offset + MIN_MOVES_OFFSET);
+	}
+
+	/**
+	 * Read a puzzle record, the puzzle starts in its initial state.
+	 * @param in
+	 * @return the puzzle
+	 * @throws IOException if the record is cut short
+	 */
+	public static PuzzleGame readPuzzle(ByteBuffer in) throws IOException {
+		if (in.remaining() < PUZZLE_SIZE) {
+			throw new IOException("Puzzle record is cut short");
+		}
+		int id = in.getInt();
+		int rows = in.get();
+		int cols = in.get();
+		int exitRow = in.get();
+		int exitCol = in.get();
+		int minMoves = in.getShort();
+		int numVehicles = in.get();
+		if (in.remaining() < numVehicles * VEHICLE_SIZE) {
+			throw new IOException("Puzzle record is cut short");
+		}
+		PuzzleGame puzzle = new PuzzleGame(id, rows, cols, exitRow, exitCol);
+		puzzle.setMinMoves(minMoves);
+		for (int i = 0; i < numVehicles; i++) {
+			int shape = in.get();
+			int row = in.get();
+			int col = in.get();
+			Color color = new Color(in.getInt(), true);
+			puzzle.addVehicle((shape & 1) == 1, shape >> 1, row, col, color);
+		}
+		puzzle.initState();
+		return puzzle;
+	}
+}
@@ -0,0 +1,23 @@
+/**
+ * Same heuristic as PuzzleHeuristic, calculated from the packed state.
+ */
+public class CompactPuzzleHeuristic implements Heuristic<CompactPuzzleState> {
+
+    @Override
+    public int getH(CompactPuzzleState node) {
+        if (node.isSolved()) return 0;
+        PuzzleLayout layout = node.getLayout();
+        long occupied = layout.getOccupied(node.getKey());
+        int main = layout.getMainIndex();
+        if (layout.isVertical(main)) return 1;
+        int row = layout.getLane(main);
+        int h = 1;
+        for (int i = layout.getPos(node.getKey(), main) + layout.getLength(main); i <= layout.getExitCol(); i++) {
+            if ((occupied & (1L << (row * layout.getNumCols() + i))) != 0) {
+                h++;
+            }
+        }
+        return h;
+    }
+
+}
@@ -0,0 +1,109 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A puzzle state that only stores the packed vehicle positions, the rest of the puzzle
+ * is shared through the PuzzleLayout. Used instead of PuzzleState while searching so a
+ * successor costs one small object instead of a full copy of the PuzzleGame.
+ */
+public class CompactPuzzleState implements TreeNode<CompactPuzzleState>, KeyedNode<CompactPuzzleState>, GoalSet {
+    //hash shared by all solved states, since they are all equal to each other
+    private static final int SOLVED_HASH = 0x5013ED;
+    //the most solved states getGoalKeys() lists
+    private static final int MAX_GOAL_KEYS = 1 << 22;
+    private final PuzzleLayout layout;
+    private final long key;
+
+    public CompactPuzzleState(PuzzleLayout layout, long key) {
+        this.layout = layout;
+        this.key = key;
+    }
+
+    public CompactPuzzleState(PuzzleLayout layout, PuzzleGame game) {
+        this(layout, layout.encode(game));
+    }
+
+    @Override
+    public int getWeightTo(CompactPuzzleState to) {
+        return 1;
+    }
+
+    /**
+     * Same moves, in the same order, as PuzzleState.getConnections()
+     */
+    @Override
+    public List<CompactPuzzleState> getConnections() {
+        long[] keys = new long[this.layout.getMaxSuccessors()];
+        int numConns = this.layout.getSuccessors(this.key, keys);
+        List<CompactPuzzleState> conns = new ArrayList<>(numConns);
+        for (int i = 0; i < numConns; i++) {
+            conns.add(new CompactPuzzleState(this.layout, keys[i]));
+        }
+        return conns;
+    }
+
+    @Override
+    public long getKey() {
+        return this.key;
+    }
+
+    @Override
+    public CompactPuzzleState fromKey(long key) {
+        return new CompactPuzzleState(this.layout, key);
+    }
+
+    /**
+     * A solved state stands for every solved state, since they are all equal to each other.
+     * Only the ones with the vehicles of each lane in the same order as this one can be reached.
+     * @return the keys of every state equal to this one in the same lane order, null if there are more than MAX_GOAL_KEYS
+     */
+    @Override
+    public long[] getGoalKeys() {
+        if (!this.isSolved()) return new long[] {this.key};
+        return this.layout.getSolvedKeys(this.key, MAX_GOAL_KEYS);
+    }
+
+    public PuzzleLayout getLayout() {
+        return this.layout;
+    }
+
+    public boolean isSolved() {
+        return this.layout.isSolved(this.key);
+    }
+
+    /**
+     * @return the board of this state, built on demand
+     */
+    public int[][] getBoard() {
+        return this.layout.toBoard(this.key);
+    }
+
+    /**
+     * @return a full PuzzleGame of this state, built on demand
+     */
+    public PuzzleGame toPuzzleGame() {
+        return this.layout.toPuzzleGame(this.key);
+    }
+
+    @Override
+    public int hashCode() {
+        if (this.isSolved()) return SOLVED_HASH;
+        return Long.hashCode(this.key);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        CompactPuzzleState other = (CompactPuzzleState) obj;
+        if (this.layout != other.layout)
+            return false;
+        if (this.key == other.key)
+            return true;
+        return this.isSolved() && other.isSolved();
+    }
+}
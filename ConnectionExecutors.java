@@ -0,0 +1,39 @@
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the executor RushHourServer runs its connections on in the --virtual mode.
+ */
+public class ConnectionExecutors {
+    //stack size of the fallback threads, a connection handler only needs a few frames
+    private static final long HANDLER_STACK_SIZE = 256 * 1024;
+
+    private ConnectionExecutors() {
+    }
+
+    /**
+     * Uses a virtual thread per task when the JVM has them (Java 21 and later), so idle
+     * clients blocked in readLine cost no platform thread. On older JVMs it falls back to
+     * a daemon platform thread per task with a small stack.
+     * Found with reflection so the server still builds and runs on older JVMs.
+     * @return an executor that starts a new thread for every task
+     */
+    public static ExecutorService newPerConnectionExecutor() {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            ExecutorService executor = (ExecutorService) virtual.invoke(null);
+            System.out.println("Connections run on virtual threads");
+            return executor;
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            System.out.println("Virtual threads are not available, connections run on platform threads");
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(r -> {
+                Thread thread = new Thread(null, r, "ConnectionHandler" + count.getAndIncrement(), HANDLER_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
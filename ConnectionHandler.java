@@ -5,7 +5,7 @@ import java.util.concurrent.BlockingQueue;
 
 public class ConnectionHandler extends Thread{
     private Socket sock;
-    private static BlockingQueue<String> queue;
+    private static BlockingQueue<ServerEvent> queue;
     private ClientInfo info = null;
     private DataInputStream is = null;
     
@@ -16,7 +16,7 @@ public class ConnectionHandler extends Thread{
      * @param sock, current socket connection of user
      */
 
-    public ConnectionHandler(ClientInfo info, BlockingQueue<String> q, Socket sock){
+    public ConnectionHandler(ClientInfo info, BlockingQueue<ServerEvent> q, Socket sock){
         this.sock = sock;
         this.info = info;
         this.queue = q;
@@ -42,7 +42,6 @@ public class ConnectionHandler extends Thread{
             String line;
             try {
                 line = is.readLine();
-                System.out.println("Received " + line);
             } catch (IOException e1) {
                 // Connection probably broke?
                 e1.printStackTrace();
@@ -51,8 +50,18 @@ public class ConnectionHandler extends Thread{
             }
 
             if (line != null){
+                // Parsed here so the event handler does not have to
+                ServerEvent event = ServerEvent.parse(line, info.getName());
+                if (event == null){
+                    System.out.println("Unknown command from " + info.getName() + ": " + line);
+                    continue;
+                }
+                // Moves arrive many times a second per match, they are not logged
+                if (event.getType() != ServerEvent.Type.MOVE){
+                    System.out.println("Received " + line);
+                }
                 try{
-                    queue.put(line);
+                    queue.put(event);
                 }catch(InterruptedException e){
                     // Fine, since interrupted while putting something in
                     // execution should resume when it comes back to the thread?
@@ -73,12 +82,11 @@ public class ConnectionHandler extends Thread{
 
         // Notify Event handler needs to remove online mapping and set client info to offline
         try{
-            queue.put("offline " + info.getName());
+            queue.put(ServerEvent.offline(info.getName()));
         }
         catch(InterruptedException e){
             e.printStackTrace();
         }
-        Thread.currentThread().stop();
 
     }
 }
@@ -15,6 +15,20 @@ public interface FileSystem {
 	 */
 	public void savePuzzlesToFolder(List<PuzzleGame> puzzles, String folder);
 
+	/**
+	 * Save the puzzles of several folders, the same as savePuzzlesToFolder for each of them.
+	 * Implementations that keep every folder in one file write it once.
+	 * @pre levels.size() == folderPaths.size()
+	 * @post true
+	 * @param levels the puzzles of every folder
+	 * @param folderPaths the paths of the folders
+	 */
+	public default void savePuzzlesToFolders(List<List<PuzzleGame>> levels, List<String> folderPaths) {
+		for(int i = 0; i < levels.size(); i++) {
+			this.savePuzzlesToFolder(levels.get(i), folderPaths.get(i));
+		}
+	}
+
 	/**
 	 * Save the specified puzzle to a file with the given filename
 	 * @pre filename != null
@@ -41,4 +55,22 @@ public interface FileSystem {
 	 * @return the puzzle in the saved file
 	 */
 	public PuzzleGame loadPuzzleGame(String filename);
+
+	/**
+	 * Add the puzzles in the folder to the puzzle manager.
+	 * Implementations that can read a single puzzle cheaply may add PuzzleHandles
+	 * instead, so the puzzles are only loaded when they are played.
+	 * @pre puzzleManager != null && folderPath != null
+	 * @post true
+	 * @param puzzleManager
+	 * @param typeIndex, the level to add the puzzles to
+	 * @param folderPath, the folder to load puzzles from
+	 */
+	public default void addPuzzlesFromFolder(PuzzleManager puzzleManager, int typeIndex, String folderPath) {
+		List<PuzzleGame> puzzles = this.loadPuzzlesFromFolder(folderPath);
+		if(puzzles == null) return;
+		for(PuzzleGame puzzle : puzzles) {
+			puzzleManager.addExistingPuzzle(typeIndex, puzzle);
+		}
+	}
 }
@@ -0,0 +1,10 @@
+/*
+ * A goal node that stands for a set of nodes, like a solved puzzle state stands for every solved state.
+ * Lets a search grow a frontier backwards from all of them at once.
+ */
+public interface GoalSet {
+    /**
+     * @return the keys of every node that equals this node, null if there are too many to list
+     */
+    long[] getGoalKeys();
+}
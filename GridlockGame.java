@@ -1,4 +1,6 @@
 import java.awt.*;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -14,7 +16,11 @@ public class GridlockGame implements Runnable {
 
 	public final static int NUM_LEVELS = 6;
 	private final static int MAX_PUZZLES_PER_LEVEL = 20;
+	//leave half of the processors for the game itself
+	private final static int NUM_GENERATOR_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
 	private final static String MAIN_FOLDER_NAME = "src/puzzles/";
+	//used instead of the puzzle folders when it exists, see PuzzleFileMigrator
+	private final static String PACK_FILE_NAME = "src/puzzles" + PuzzlePack.EXTENSION;
 	public final static String[] LEVEL_NAMES = {"veryEasy","easy","medium","hard","veryHard","ultraHard"};
 	public final static String[] DISPLAY_LEVEL_NAMES = {"Newbie","Beginner","Intermediate","Experienced","Advanced","Expert"};
     public final static int[] LEVEL_MIN_MOVES = {7,10,15,20,25,30};
@@ -31,13 +37,15 @@ public class GridlockGame implements Runnable {
 
 	public GridlockGame() {
 		
-		fileSys = new FileSystemImp();
-		this.puzzleGenerator = new PuzzleGeneratorAStar();
+		if(new File(PACK_FILE_NAME).exists()) {
+			fileSys = new PuzzlePackFileSystem(PACK_FILE_NAME);
+		} else {
+			fileSys = new CompactFileSystem();
+		}
+		this.puzzleGenerator = new ParallelPuzzleGenerator(NUM_GENERATOR_THREADS);
 		this.puzzleManager = new PuzzleManager(NUM_LEVELS);
 		for(int i = 0; i < NUM_LEVELS; i++) {
-			for(PuzzleGame puzzle : fileSys.loadPuzzlesFromFolder(MAIN_FOLDER_NAME + LEVEL_NAMES[i])) {
-				this.puzzleManager.addExistingPuzzle(i, puzzle);
-			}
+			fileSys.addPuzzlesFromFolder(this.puzzleManager, i, MAIN_FOLDER_NAME + LEVEL_NAMES[i]);
 		}
 	}
 	/**
@@ -56,13 +64,24 @@ public class GridlockGame implements Runnable {
 	public PuzzleGame getPuzzle(int level, int puzzleId) {
 		return this.puzzleManager.getPuzzle(level, puzzleId);
 	}
+	/**
+	 * @param level
+	 * @return the ids of the puzzles of the level, the puzzles are not loaded
+	 */
+	public List<Integer> getPuzzleIds(int level) {
+		return this.puzzleManager.getPuzzleIds(level);
+	}
 	public List<PuzzleGame> getPuzzles(int level) {
 		return this.puzzleManager.getPuzzles(level);
 	}
 	public void savePuzzles() {
+		List<List<PuzzleGame>> levels = new ArrayList<>();
+		List<String> folders = new ArrayList<>();
 		for(int i = 0; i < NUM_LEVELS; i++) {
-			this.fileSys.savePuzzlesToFolder(this.puzzleManager.getPuzzles(i), MAIN_FOLDER_NAME + LEVEL_NAMES[i]);
+			levels.add(this.puzzleManager.getPuzzles(i));
+			folders.add(MAIN_FOLDER_NAME + LEVEL_NAMES[i]);
 		}
+		this.fileSys.savePuzzlesToFolders(levels, folders);
 	}
 	@Override
 	public void run() {
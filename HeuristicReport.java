@@ -0,0 +1,94 @@
+import java.util.List;
+
+/**
+ * Solves every saved puzzle with each heuristic of PuzzleSolver, with no heuristic as a
+ * baseline, with BidirectionalSearch and with IDAStar using BOUNDED_MEMORY_HEURISTIC, and prints,
+ * per level, how many states each search expanded and how long it took.
+ * Every search has to find solutions of the same length, a puzzle where they differ is printed.
+ * The pattern database is loaded, or built if PatternDatabase.DEFAULT_FILE is missing, before
+ * any search is timed.
+ *
+ * Usage: java HeuristicReport [search...]
+ * runs only the named searches, BLIND, BIDIRECTIONAL, IDA_STAR or the name of a
+ * PuzzleSolver.HeuristicType, in the order given.
+ */
+public class HeuristicReport {
+    private static final String BLIND = "BLIND";
+    private static final String BIDIRECTIONAL = "BIDIRECTIONAL";
+    private static final String IDA_STAR = "IDA_STAR";
+
+    public static void main(String[] args) {
+        GridlockGame game = new GridlockGame();
+        PatternDatabase.getDefault();
+        PuzzleSolver.HeuristicType[] heuristicTypes = PuzzleSolver.HeuristicType.values();
+        String[] types = new String[heuristicTypes.length + 3];
+        types[0] = BLIND;
+        types[1] = BIDIRECTIONAL;
+        for (int t = 0; t < heuristicTypes.length; t++) {
+            types[t + 2] = heuristicTypes[t].toString();
+        }
+        types[types.length - 1] = IDA_STAR;
+        if (args.length > 0) {
+            types = args;
+            for (String type : types) {
+                try {
+                    getSearch(type);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("Unknown search " + type);
+                    return;
+                }
+            }
+        }
+        for (int level = 0; level < GridlockGame.LEVEL_NAMES.length; level++) {
+            List<Integer> ids = game.getPuzzleIds(level);
+            long[] expanded = new long[types.length];
+            long[] nanos = new long[types.length];
+            int solved = 0;
+            for (int id : ids) {
+                PuzzleGame puzzle = game.getPuzzle(level, id);
+                if (puzzle == null || !PuzzleLayout.canEncode(puzzle)) continue;
+                PuzzleLayout layout = new PuzzleLayout(puzzle);
+                if (!layout.canReachExit()) continue;
+                int cost = -1;
+                for (int t = 0; t < types.length; t++) {
+                    long start = System.nanoTime();
+                    ShortestPathSearch<CompactPuzzleState> search = getSearch(types[t]);
+                    long key = layout.encode(puzzle);
+                    List<CompactPuzzleState> path = search.shortestPath(new CompactPuzzleState(layout, key),
+                            new CompactPuzzleState(layout, layout.getGoalKey(key)));
+                    nanos[t] += System.nanoTime() - start;
+                    expanded[t] += search.getNumExpanded();
+                    int length = path == null ? -1 : search.getFinalCost();
+                    if (t > 0 && length != cost) {
+                        System.out.println(GridlockGame.LEVEL_NAMES[level] + " puzzle " + id + ": " + types[t] + " found " + length + " moves, " + types[t - 1] + " " + cost);
+                    }
+                    cost = length;
+                }
+                solved++;
+            }
+            StringBuilder line = new StringBuilder(GridlockGame.LEVEL_NAMES[level] + ": " + solved + " puzzles");
+            for (int t = 0; t < types.length; t++) {
+                line.append(", ").append(types[t]).append(" ").append(expanded[t]).append(" expanded in ")
+                        .append(nanos[t] / 1000000).append("ms");
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * @param type, BLIND, BIDIRECTIONAL, IDA_STAR or the name of a PuzzleSolver.HeuristicType
+     * @return a new search of the type
+     */
+    @SuppressWarnings("unchecked")
+    private static ShortestPathSearch<CompactPuzzleState> getSearch(String type) {
+        if (type.equals(BIDIRECTIONAL)) {
+            return new BidirectionalSearch<>(new TreeGraph<CompactPuzzleState>());
+        }
+        if (type.equals(IDA_STAR)) {
+            return new IDAStar<>(new TreeGraph<>(), PuzzleSolver.getCompactHeuristic(PuzzleSolver.BOUNDED_MEMORY_HEURISTIC));
+        }
+        Heuristic<CompactPuzzleState> h = type.equals(BLIND) ? new ZeroHeuristic()
+                : PuzzleSolver.getCompactHeuristic(PuzzleSolver.HeuristicType.valueOf(type));
+        return new AStar<>(new TreeGraph<>(), h);
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Gives the next optimal move for a puzzle.
+ * The state space of the puzzle is explored once in the background and cached, after
+ * that every hint is a lookup, no matter how the player has moved, undone or redone.
+ */
+public class HintProvider implements Runnable {
+	//number of explored puzzles kept in memory
+	private static final int MAX_CACHED = 8;
+	//most recently used first
+	private static final List<StateSpaceExplorer> cache = new LinkedList<>();
+	private final PuzzleGame initialGame;
+	private volatile StateSpaceExplorer explorer;
+
+	/**
+	 * Starts exploring the puzzle in the background unless it has been explored before.
+	 * @pre game != null
+	 * @param game, the puzzle to give hints for
+	 */
+	public HintProvider(PuzzleGame game) {
+		this.initialGame = new PuzzleGame(game);
+		this.explorer = findCached(game);
+		if (this.explorer == null && PuzzleLayout.canEncode(game)) {
+			Thread thread = new Thread(this, "HintThread");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	@Override
+	public void run() {
+		StateSpaceExplorer explored = new StateSpaceExplorer(this.initialGame);
+		addToCache(explored);
+		this.explorer = explored;
+	}
+
+	/**
+	 * @return true once the puzzle has been explored
+	 */
+	public boolean isReady() {
+		return this.explorer != null;
+	}
+
+	/**
+	 * Returns the first move of a shortest solution from the current state of the game.
+	 * @pre game is the puzzle given to the constructor, in any state
+	 * @post true
+	 * @param game
+	 * @return the move, or null if the puzzle is still being explored, already solved or unsolvable
+	 */
+	public VehicleMove getHint(PuzzleGame game) {
+		StateSpaceExplorer explored = this.explorer;
+		if (explored == null) return null;
+		return explored.getBestNextMove(game);
+	}
+
+	private static synchronized StateSpaceExplorer findCached(PuzzleGame game) {
+		Iterator<StateSpaceExplorer> it = cache.iterator();
+		while (it.hasNext()) {
+			StateSpaceExplorer explored = it.next();
+			if (explored.contains(game)) {
+				it.remove();
+				cache.add(0, explored);
+				return explored;
+			}
+		}
+		return null;
+	}
+
+	private static synchronized void addToCache(StateSpaceExplorer explored) {
+		cache.add(0, explored);
+		if (cache.size() > MAX_CACHED) {
+			cache.remove(cache.size() - 1);
+		}
+	}
+}
@@ -0,0 +1,179 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Iterative deepening A*: depth first searches that give up on a node once its cost plus
+ * heuristic passes a bound, raising the bound to the smallest value that passed it until
+ * the goal is reached. Only the current path is kept, so unlike AStar the memory used does
+ * not grow with the number of states, at the cost of expanding some states more than once.
+ *
+ * A fixed size transposition table remembers the cost each node was reached with in the
+ * current iteration, so a node reached again along another path at no lower cost is skipped.
+ * The table is lossy, a node replaces whatever was in its slot, which only means some
+ * states are expanded again. KeyedNodes are stored by key, other nodes by reference.
+ *
+ * Since the table forgets, a search for an unreachable goal would never see that every
+ * node has been expanded, so the search gives up and returns null once it has expanded
+ * maxExpanded nodes. Without a goal in reach it only ever stops that way.
+ * Like AStar, it also returns null early if the thread is interrupted, so a cancelled
+ * solve frees its thread.
+ *
+ * @param <N> any object to use as the node for the search
+ */
+public class IDAStar<N> implements ShortestPathSearch<N> {
+    //8 bytes a slot for KeyedNodes
+    public static final int DEFAULT_TABLE_SIZE = 1 << 18;
+    //a slot keeps its node alive, and a node of a large board is a few kilobytes
+    public static final int DEFAULT_NODE_TABLE_SIZE = 1 << 12;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    //returned by search() once the goal is reached
+    private static final int FOUND = -1;
+    //returned by search() once maxExpanded nodes have been expanded or the thread is interrupted
+    private static final int GAVE_UP = -2;
+    private final Heuristic<N> h;
+    private final Graph<N> graph;
+    //0 for the default of the kind of node
+    private final int tableSize;
+    private final int maxExpanded;
+    private int tableBits;
+    //transposition table, by slot, keys for KeyedNodes and nodes for the rest
+    private long[] tableKeys;
+    private Object[] tableNodes;
+    private int[] tableG;
+    //the iteration the slot was written in, slots of earlier iterations are empty
+    private int[] tableIteration;
+    private int iteration;
+    private List<N> path;
+    private N goal;
+    private int n;
+    private int finalCost;
+
+    /**
+     * Uses a table of DEFAULT_TABLE_SIZE for KeyedNodes and DEFAULT_NODE_TABLE_SIZE for other nodes,
+     * and gives up after Integer.MAX_VALUE expansions
+     */
+    public IDAStar(Graph<N> graph, Heuristic<N> h) {
+        this(graph, h, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @pre tableSize >= 0, maxExpanded > 0
+     * @param graph
+     * @param h
+     * @param tableSize, the number of nodes the transposition table holds, rounded up to a power of two,
+     * 0 for the default of the kind of node
+     * @param maxExpanded, the most nodes to expand before giving up
+     */
+    public IDAStar(Graph<N> graph, Heuristic<N> h, int tableSize, int maxExpanded) {
+        this.h = h;
+        this.graph = graph;
+        this.tableSize = tableSize;
+        this.maxExpanded = maxExpanded;
+        this.n = 0;
+        this.finalCost = 0;
+    }
+
+    /**
+     * The IDA* algorithm to find the shortest path
+     *
+     * @param start, the node to begin the search
+     * @return the path, or null if the goal cannot be reached, maxExpanded nodes were
+     * expanded before reaching it, or the thread was interrupted
+     */
+    @Override
+    public List<N> shortestPath(N start, N goal) {
+        this.n = 0;
+        this.finalCost = 0;
+        this.goal = goal;
+        this.path = new ArrayList<>();
+        this.path.add(start);
+        this.allocateTable(start instanceof KeyedNode);
+        int bound = this.h.getH(start);
+        while (true) {
+            this.iteration++;
+            int next = this.search(start, 0, bound);
+            if (next == FOUND) return this.path;
+            if (next == GAVE_UP) return null;
+            // Nothing passed the bound, every reachable node has been seen
+            if (next == Integer.MAX_VALUE) return null;
+            bound = next;
+        }
+    }
+
+    /**
+     * Depth first search below node, node is the last node of path
+     * @return FOUND if the goal was reached, with path ending at it, GAVE_UP once maxExpanded
+     * nodes were expanded or the thread is interrupted, otherwise the smallest cost plus heuristic that passed the bound
+     */
+    private int search(N node, int g, int bound) {
+        int f = g + this.h.getH(node);
+        if (f > bound) return f;
+        if (node.equals(this.goal)) {
+            this.finalCost = g;
+            return FOUND;
+        }
+        if (!this.visit(node, g)) return Integer.MAX_VALUE;
+        if (n == this.maxExpanded || Thread.currentThread().isInterrupted()) return GAVE_UP;
+        n++;
+        N parent = this.path.size() > 1 ? this.path.get(this.path.size() - 2) : null;
+        int min = Integer.MAX_VALUE;
+        for (N childNode : this.graph.getConnections(node)) {
+            // Moving straight back is never part of a shortest path
+            if (childNode.equals(parent)) continue;
+            this.path.add(childNode);
+            int next = this.search(childNode, g + this.graph.getWeight(node, childNode), bound);
+            if (next == FOUND || next == GAVE_UP) return next;
+            this.path.remove(this.path.size() - 1);
+            min = Math.min(min, next);
+        }
+        return min;
+    }
+
+    /**
+     * Record that the node is expanded with cost g in this iteration
+     * @return false if it already was, with a cost no higher than g
+     */
+    @SuppressWarnings("unchecked")
+    private boolean visit(N node, int g) {
+        boolean keyed = this.tableKeys != null;
+        long key = keyed ? ((KeyedNode<N>) node).getKey() : node.hashCode();
+        int slot = (int) ((key * GOLDEN_RATIO) >>> (Long.SIZE - this.tableBits));
+        if (this.tableIteration[slot] == this.iteration && this.tableG[slot] <= g
+                && (keyed ? this.tableKeys[slot] == key : node.equals(this.tableNodes[slot]))) {
+            return false;
+        }
+        if (keyed) {
+            this.tableKeys[slot] = key;
+        } else {
+            this.tableNodes[slot] = node;
+        }
+        this.tableG[slot] = g;
+        this.tableIteration[slot] = this.iteration;
+        return true;
+    }
+
+    /**
+     * Allocate the table on first use, or when switching between keyed and other nodes
+     */
+    private void allocateTable(boolean keyed) {
+        if (this.tableG != null && keyed == (this.tableKeys != null)) return;
+        int requested = this.tableSize > 0 ? this.tableSize : keyed ? DEFAULT_TABLE_SIZE : DEFAULT_NODE_TABLE_SIZE;
+        this.tableBits = Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(requested, 2) - 1);
+        int size = 1 << this.tableBits;
+        this.tableKeys = keyed ? new long[size] : null;
+        this.tableNodes = keyed ? null : new Object[size];
+        this.tableG = new int[size];
+        this.tableIteration = new int[size];
+        this.iteration = 0;
+    }
+
+    @Override
+    public int getFinalCost() {
+        return this.finalCost;
+    }
+
+    @Override
+    public int getNumExpanded() {
+        return n;
+    }
+}
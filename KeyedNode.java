@@ -0,0 +1,16 @@
+/*
+ * Nodes that can be identified by a long key.
+ * Lets a search store them in primitive arrays instead of hashing the node objects.
+ */
+public interface KeyedNode<N> {
+    /**
+     * @return a key that is unique to the state of this node
+     */
+    long getKey();
+
+    /**
+     * @param key, a key returned by getKey() of a node from the same search
+     * @return the node identified by key
+     */
+    N fromKey(long key);
+}
@@ -23,10 +23,10 @@ public class LevelController implements ActionListener {
 	public void actionPerformed(ActionEvent e) {
 		String action = e.getActionCommand();
 		System.out.println(action);
-		for(PuzzleGame p : this.game.getPuzzles(this.level)) {
-			if(action.equals(Integer.toString(p.getId()))) {
+		for(int puzzleId : this.game.getPuzzleIds(this.level)) {
+			if(action.equals(Integer.toString(puzzleId))) {
 
-				this.setGameView(p);
+				this.setGameView(this.game.getPuzzle(this.level, puzzleId));
 				this.levelView.setVisible(false);
 			}
 		}
@@ -51,6 +51,7 @@ public class LevelController implements ActionListener {
 
         PuzzleSolvedPopUpController popUpController = new PuzzleSolvedPopUpController(this.game,this.level,puzzleGame.getId(),this.gameView,this.levelView);
         pv.setController(popUpController);
+        bc.setSolvedListener(e -> popUpController.showIfSolved());
 
 		this.gameView.setLocation(levelView.getLocation());
 		this.gameView.setSize(levelView.getSize());
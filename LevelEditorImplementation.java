@@ -18,13 +18,13 @@ public class LevelEditorImplementation implements LevelEditor{
 
 	@Override
 	public PuzzleGame loadSavedLevel(String filename) {
-		FileSystem f = new FileSystemImp();
+		FileSystem f = new CompactFileSystem();
 		return f.loadPuzzleGame(filename);
 	}
 
 	@Override
 	public void saveLevel(String filename) {
-		FileSystem f = new FileSystemImp();
+		FileSystem f = new CompactFileSystem();
 		f.savePuzzleGame(puzzle, filename);
 	}
 
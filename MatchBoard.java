@@ -0,0 +1,171 @@
+import java.util.Arrays;
+
+/**
+ * The server's copy of the puzzle a player is solving in a match, used to check the moves
+ * the player reports. Only arrays are kept, one cell per board position holding the id of
+ * the vehicle on it, so checking and applying a move allocates nothing.
+ * The rules are those of PuzzleGame.canMoveUp/Down/Left/Right: a vehicle slides along its
+ * own row or column over empty cells, and the main vehicle, id 0, may slide one cell past
+ * the edge of the board at the exit.
+ * A board belongs to the event handler of its player and is not thread safe.
+ */
+public class MatchBoard {
+    private static final byte EMPTY = -1;
+    private final int rows;
+    private final int cols;
+    private final int exitRow;
+    private final int exitCol;
+    //id of the vehicle on every cell, row by row
+    private final byte[] cells;
+    private final byte[] vehicleRow;
+    private final byte[] vehicleCol;
+    //0 for an id without a vehicle
+    private final byte[] length;
+    private final boolean[] vertical;
+    private final byte[] startRow;
+    private final byte[] startCol;
+
+    /**
+     * @pre puzzle != null && the vehicle ids are small, as after CompactPuzzleFormat.readPuzzle
+     * @param puzzle, the puzzle in its initial state
+     */
+    public MatchBoard(PuzzleGame puzzle) {
+        this.rows = puzzle.getNumRows();
+        this.cols = puzzle.getNumCols();
+        this.exitRow = puzzle.getExitRow();
+        this.exitCol = puzzle.getExitCol();
+        int numVehicles = 0;
+        for (Vehicle v : puzzle.getVehicles()) {
+            numVehicles = Math.max(numVehicles, v.getID() + 1);
+        }
+        this.cells = new byte[this.rows * this.cols];
+        this.vehicleRow = new byte[numVehicles];
+        this.vehicleCol = new byte[numVehicles];
+        this.length = new byte[numVehicles];
+        this.vertical = new boolean[numVehicles];
+        this.startRow = new byte[numVehicles];
+        this.startCol = new byte[numVehicles];
+        for (Vehicle v : puzzle.getVehicles()) {
+            int id = v.getID();
+            this.length[id] = (byte) v.getLength();
+            this.vertical[id] = v.getIsVertical();
+            this.startRow[id] = (byte) v.getRow();
+            this.startCol[id] = (byte) v.getCol();
+        }
+        this.reset();
+    }
+
+    private MatchBoard(MatchBoard other) {
+        this.rows = other.rows;
+        this.cols = other.cols;
+        this.exitRow = other.exitRow;
+        this.exitCol = other.exitCol;
+        this.cells = other.cells.clone();
+        this.vehicleRow = other.vehicleRow.clone();
+        this.vehicleCol = other.vehicleCol.clone();
+        this.length = other.length;
+        this.vertical = other.vertical;
+        this.startRow = other.startRow;
+        this.startCol = other.startCol;
+    }
+
+    /**
+     * @return a board in the same state that can be moved independently
+     */
+    public MatchBoard copy() {
+        return new MatchBoard(this);
+    }
+
+    /**
+     * Put every vehicle back where it started
+     */
+    public void reset() {
+        Arrays.fill(this.cells, EMPTY);
+        for (int id = 0; id < this.length.length; id++) {
+            this.vehicleRow[id] = this.startRow[id];
+            this.vehicleCol[id] = this.startCol[id];
+            this.fill(id, (byte) id);
+        }
+    }
+
+    /**
+     * Slide the vehicle to the position if that is a legal move.
+     * @param id
+     * @param row, the new row of the top left cell of the vehicle
+     * @param col, the new column of the top left cell of the vehicle
+     * @return whether the move was legal, the board is unchanged if it was not
+     */
+    public boolean move(int id, int row, int col) {
+        if (id < 0 || id >= this.length.length || this.length[id] == 0) return false;
+        int len = this.length[id];
+        if (this.vertical[id]) {
+            if (col != this.vehicleCol[id]) return false;
+            int from = Math.min(row, this.vehicleRow[id]);
+            int to = Math.max(row, this.vehicleRow[id]) + len;
+            if (row < this.minStart(id, this.exitRow) || row + len > this.maxEnd(id, this.exitRow, this.rows)) return false;
+            for (int r = Math.max(0, from); r < Math.min(this.rows, to); r++) {
+                byte cell = this.cells[r * this.cols + col];
+                if (cell != EMPTY && cell != id) return false;
+            }
+        } else {
+            if (row != this.vehicleRow[id]) return false;
+            int from = Math.min(col, this.vehicleCol[id]);
+            int to = Math.max(col, this.vehicleCol[id]) + len;
+            if (col < this.minStart(id, this.exitCol) || col + len > this.maxEnd(id, this.exitCol, this.cols)) return false;
+            for (int c = Math.max(0, from); c < Math.min(this.cols, to); c++) {
+                byte cell = this.cells[row * this.cols + c];
+                if (cell != EMPTY && cell != id) return false;
+            }
+        }
+        this.fill(id, EMPTY);
+        this.vehicleRow[id] = (byte) row;
+        this.vehicleCol[id] = (byte) col;
+        this.fill(id, (byte) id);
+        return true;
+    }
+
+    /**
+     * The main vehicle may leave the board by one cell at an exit on the first row or column
+     */
+    private int minStart(int id, int exit) {
+        return id == 0 && exit == 0 ? -1 : 0;
+    }
+
+    /**
+     * The main vehicle may leave the board by one cell at an exit on the last row or column
+     */
+    private int maxEnd(int id, int exit, int size) {
+        return id == 0 && exit == size - 1 ? size + 1 : size;
+    }
+
+    /**
+     * Write the value on the cells of the vehicle that are on the board
+     */
+    private void fill(int id, byte value) {
+        for (int i = 0; i < this.length[id]; i++) {
+            int r = this.vehicleRow[id] + (this.vertical[id] ? i : 0);
+            int c = this.vehicleCol[id] + (this.vertical[id] ? 0 : i);
+            if (r < 0 || r >= this.rows || c < 0 || c >= this.cols) continue;
+            this.cells[r * this.cols + c] = value;
+        }
+    }
+
+    /**
+     * @return whether the main vehicle has reached the exit, the same as PuzzleGame.isSolved
+     */
+    public boolean isSolved() {
+        return this.cells[this.exitRow * this.cols + this.exitCol] == 0;
+    }
+
+    public int getNumVehicles() {
+        return this.length.length;
+    }
+
+    public int getRow(int id) {
+        return this.vehicleRow[id];
+    }
+
+    public int getCol(int id) {
+        return this.vehicleCol[id];
+    }
+}
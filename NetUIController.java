@@ -31,6 +31,8 @@ public class NetUIController implements NetworkUIController, Runnable{
 
     private static BufferedReader inputLine = null;
     private static boolean closed = false;
+    // Whether the server sends WireProtocol frames instead of lines
+    private static boolean binary = false;
 
     // Game frame
     private static JFrame f;
@@ -44,6 +46,14 @@ public class NetUIController implements NetworkUIController, Runnable{
     private static GameView gameView;
     private static GameController gameController;
 
+    // Opponent's board of the current match, moved by the moves the server forwards
+    private static final int OPPONENT_CELL_SIZE = 15;
+    private static PuzzleGame opponentGame;
+    private static PuzzleView opponentView;
+    // Position of every vehicle of the own puzzle as last sent to the server, indexed by id
+    private static int[] sentRows;
+    private static int[] sentCols;
+
     /** Constructor for NetUIController
      * 
      * @param np, N
@@ -196,7 +206,8 @@ public class NetUIController implements NetworkUIController, Runnable{
      * @return whether connection to server was successful
      */
     private boolean sendUsername(){
-        String newLine = "user " + username;
+        // Ask for framed messages, a server that does not know them ignores the extra word
+        String newLine = "user " + username + " " + WireProtocol.HANDSHAKE_OPTION;
         os.println(newLine);
         os.flush();
 
@@ -211,6 +222,7 @@ public class NetUIController implements NetworkUIController, Runnable{
                 createDialogBox("Something wrong happened");
                 return false;
             }
+            binary = WireProtocol.acceptsBinary(responseLine);
 
         } catch (IOException e) {
             System.err.println("IOException:  " + e);
@@ -257,6 +269,10 @@ public class NetUIController implements NetworkUIController, Runnable{
      */
     public void run() {
         System.out.println("Listener activated");
+        if (binary){
+            runBinary();
+            return;
+        }
         String responseLine;
         try {
             while ((responseLine = is.readLine()) != null) {
@@ -273,6 +289,34 @@ public class NetUIController implements NetworkUIController, Runnable{
 
     }
 
+    /**
+     * Listener for framed messages, puzzles arrive already packed and need no parsing
+     */
+    private void runBinary() {
+        try {
+            WireProtocol.Frame frame;
+            while ((frame = WireProtocol.readFrame(is)) != null) {
+                if (frame.getType() == WireProtocol.PUZZLE){
+                    System.out.println(" ----------- PUZZLE CREATION ----------");
+                    displayPuzzle(frame.getPuzzle());
+                }
+                else if (frame.getType() == WireProtocol.MOVES){
+                    byte[] moves = frame.getMoves();
+                    moveOpponent(moves, moves.length);
+                }
+                else if (frame.getType() == WireProtocol.TEXT){
+                    String responseLine = frame.getText();
+                    System.out.println("From server: " + responseLine);
+                    processMessage(responseLine);
+                }
+            }
+            // Connection broke
+        } catch (IOException e) {
+            System.err.println("IOException:  " + e);
+        }
+        System.out.println("Listener done");
+    }
+
     /**
      * Main event handler for client side, when it receives messages from the server
      * 
@@ -307,7 +351,7 @@ public class NetUIController implements NetworkUIController, Runnable{
             case "puzzle":
                 System.out.println(" ----------- PUZZLE CREATION ----------");
                 System.out.println(message);
-                displayPuzzle(message);
+                displayPuzzle(parsePuzzle(message));
                 break;
 
             case "setopp":
@@ -318,10 +362,23 @@ public class NetUIController implements NetworkUIController, Runnable{
                 forfeit(message);
                 break;
 
+            case "dc":
+                opponentDisconnected(message);
+                break;
+
             case "stats":
                 updateStats(message);
                 break;
 
+            case WireProtocol.MOVES_COMMAND:
+                String[] words = message.trim().split(" ");
+                byte[] moves = new byte[words.length - 1];
+                for (int i = 0; i < moves.length; i++){
+                    moves[i] = Byte.parseByte(words[i + 1]);
+                }
+                moveOpponent(moves, moves.length);
+                break;
+
             default:
                 break;
         }
@@ -403,18 +460,11 @@ public class NetUIController implements NetworkUIController, Runnable{
     }
 
     /**
-     * Creates a new JFrame Window with GridLock Puzzle
+     * Turns the puzzle line of the text protocol into a puzzle
      * @param message, message to be turned into puzzle
+     * @return the puzzle in its initial state
      */
-    private void displayPuzzle(String message){
-        np.lockButtons();
-        lost = false;
-        f = new JFrame("GridLock " + username);
-
-        f.setLayout(new BorderLayout());
-        f.setBackground(Color.BLACK);
-
-        GridlockGame game = new GridlockGame();
+    private PuzzleGame parsePuzzle(String message){
         PuzzleGame puzzleGame = new PuzzleGame(6, 6);
 //        PuzzleGame puzzleGame = game.getPuzzle(0, 2);
         //puzzleGame = new PuzzleGame(6,6,2,5); // NOT SURE ABOUT THE EXIT CONDITION
@@ -445,12 +495,41 @@ public class NetUIController implements NetworkUIController, Runnable{
             puzzleGame.addVehicle(v);
         }
         puzzleGame.initState();
+        return puzzleGame;
+    }
+
+    /**
+     * Creates a new JFrame Window with GridLock Puzzle
+     * @param puzzleGame, the puzzle to play
+     */
+    private void displayPuzzle(PuzzleGame puzzleGame){
+        np.lockButtons();
+        lost = false;
+        f = new JFrame("GridLock " + username);
+
+        f.setLayout(new BorderLayout());
+        f.setBackground(Color.BLACK);
+
+        // Both players start from the same puzzle
+        opponentGame = new PuzzleGame(puzzleGame);
+        opponentView = new PuzzleView(opponentGame, OPPONENT_CELL_SIZE);
+        int maxId = 0;
+        for (Vehicle v : puzzleGame.getVehicles()){
+            maxId = Math.max(maxId, v.getID());
+        }
+        sentRows = new int[maxId + 1];
+        sentCols = new int[maxId + 1];
+        for (Vehicle v : puzzleGame.getVehicles()){
+            sentRows[v.getID()] = v.getRow();
+            sentCols[v.getID()] = v.getCol();
+        }
 
         PuzzleView pv = new PuzzleView(puzzleGame, PuzzleView.DEFAULT_CELL_SIZE);
         PuzzleController pc = new PuzzleController(puzzleGame, pv);
 
         ButtonPanel bp = new ButtonPanel(PuzzleView.DEFAULT_CELL_SIZE);
-        SideButtonController bc = new SideButtonController(pv, puzzleGame, bp);
+        // A hint would play the match for the player
+        SideButtonController bc = new SideButtonController(pv, puzzleGame, bp, false);
         BorderedPuzzleView borderedPuzzleView = new BorderedPuzzleView(pv);
 
         GameView gameView = new GameView(bp, bc, pv, pc, borderedPuzzleView);
@@ -460,7 +539,12 @@ public class NetUIController implements NetworkUIController, Runnable{
 
         puzzleGame.setNUIController(this);
 
+        JPanel opponentPanel = new JPanel(new BorderLayout());
+        opponentPanel.add(new JLabel("Opponent"), BorderLayout.NORTH);
+        opponentPanel.add(opponentView, BorderLayout.CENTER);
+
         f.add(gameView);
+        f.add(opponentPanel, BorderLayout.EAST);
         f.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
         f.pack();
         f.setMinimumSize(new Dimension(gameView.getWidth(), gameView.getHeight() + 23));
@@ -504,6 +588,73 @@ public class NetUIController implements NetworkUIController, Runnable{
         f.dispose();
     }
 
+    /**
+     * Called by PuzzleGame whenever vehicles of the match puzzle moved,
+     * sends the new position of every vehicle that changed since the last call
+     * @param game
+     */
+    public void vehiclesMoved(PuzzleGame game){
+        if (sentRows == null) return;
+        boolean sent = false;
+        for (Vehicle v : game.getVehicles()){
+            int id = v.getID();
+            if (id >= sentRows.length || (sentRows[id] == v.getRow() && sentCols[id] == v.getCol())){
+                continue;
+            }
+            sentRows[id] = v.getRow();
+            sentCols[id] = v.getCol();
+            os.println("move " + username + " " + id + " " + v.getRow() + " " + v.getCol());
+            sent = true;
+        }
+        if (sent){
+            os.flush();
+        }
+    }
+
+    /**
+     * Called by PuzzleGame when the match puzzle is put back in its initial state,
+     * the server resets its copy instead of checking the vehicles' moves one by one
+     * @param game
+     */
+    public void puzzleReset(PuzzleGame game){
+        if (sentRows == null) return;
+        for (Vehicle v : game.getVehicles()){
+            if (v.getID() < sentRows.length){
+                sentRows[v.getID()] = v.getRow();
+                sentCols[v.getID()] = v.getCol();
+            }
+        }
+        message("reset " + username);
+    }
+
+    /**
+     * Moves the vehicles of the opponent's board
+     * @param moves, vehicleId, row, col of every vehicle that moved
+     * @param length, the number of bytes of moves
+     */
+    private void moveOpponent(byte[] moves, int length){
+        int numMoves = length / 3;
+        int[] ids = new int[numMoves];
+        int[] rows = new int[numMoves];
+        int[] cols = new int[numMoves];
+        for (int i = 0; i < numMoves; i++){
+            ids[i] = moves[3 * i];
+            rows[i] = moves[3 * i + 1];
+            cols[i] = moves[3 * i + 2];
+        }
+        SwingUtilities.invokeLater(() -> {
+            if (opponentGame == null) return;
+            for (int i = 0; i < numMoves; i++){
+                if (opponentGame.getVehicle(ids[i]) == null) return;
+            }
+            opponentGame.setVehiclePositions(ids, rows, cols);
+            for (int i = 0; i < numMoves; i++){
+                opponentView.setVehicleLocation(ids[i], cols[i] * OPPONENT_CELL_SIZE, rows[i] * OPPONENT_CELL_SIZE);
+            }
+            opponentView.repaint();
+        });
+    }
+
     /**
      * Displays the opponen'ts name
      * @param message
@@ -530,6 +681,17 @@ public class NetUIController implements NetworkUIController, Runnable{
         lost = true; // Flag, to not notify the server once you complete the puzzle
     }
 
+    /**
+     * The opponent left during the match, the server counts it as a win
+     * @param message
+     */
+    private void opponentDisconnected(String message){
+        String[] parts = message.split(" ");
+        createDialogBox("User: " + parts[1].toLowerCase() + ", has disconnected, you win");
+
+        lost = true; // Flag, the match is already over on the server
+    }
+
     /**
      * Get new wins and losses
      * @param message
@@ -0,0 +1,260 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A non-blocking client of RushHourServerNIO. Splits the incoming bytes into lines the same
+ * way DataInputStream.readLine does. Outgoing messages are collected until flush() and then
+ * queued as one buffer until the channel can take them. A client that lets more than
+ * MAX_PENDING_BYTES pile up in the queue is disconnected.
+ * Reading and writing only happen on the thread of its SelectorLoop.
+ */
+public class NioClientConnection implements ClientConnection {
+    //a client sending a longer line without a line break is disconnected
+    private static final int MAX_LINE_LENGTH = 8192;
+    private static final int READ_BUFFER_SIZE = 4096;
+    private final SocketChannel channel;
+    private final SelectorLoop loop;
+    private final RushHourServerNIO server;
+    private SelectionKey key;
+    private final ByteBuffer readBuffer;
+    private final ByteArrayOutputStream line;
+    //a '\r' ends a line, a '\n' right after it is part of the same line break
+    private boolean lastWasCR;
+    //messages sent since the last flush
+    private final ByteArrayOutputStream unflushed;
+    private volatile boolean binary;
+    private final Queue<ByteBuffer> pending;
+    //bytes in pending that are not written yet
+    private final AtomicInteger pendingBytes;
+    //true while the loop is asked to write the pending lines
+    private final AtomicBoolean writing;
+    private volatile boolean closing;
+    //set once the client is more than MAX_PENDING_BYTES behind
+    private volatile boolean behind;
+    private boolean closed;
+    //true once the event handler was told the client left
+    private boolean disconnected;
+    //null until the handshake is done
+    private String username;
+
+    public NioClientConnection(SocketChannel channel, SelectorLoop loop, RushHourServerNIO server) {
+        this.channel = channel;
+        this.loop = loop;
+        this.server = server;
+        this.readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        this.line = new ByteArrayOutputStream();
+        this.unflushed = new ByteArrayOutputStream();
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.pendingBytes = new AtomicInteger(0);
+        this.writing = new AtomicBoolean(false);
+    }
+
+    void setKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    @Override
+    public void send(String message) throws IOException {
+        if (this.binary) {
+            this.buffer(WireProtocol.encodeText(message));
+        } else {
+            this.buffer((message + System.lineSeparator()).getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    @Override
+    public void sendPuzzle(PuzzleCatalog.Entry puzzle) throws IOException {
+        if (this.binary) {
+            this.buffer(puzzle.getFrame());
+        } else {
+            this.send("puzzle " + puzzle.getText());
+        }
+    }
+
+    @Override
+    public void sendMoves(byte[] moves, int length) throws IOException {
+        if (this.binary) {
+            this.buffer(WireProtocol.encodeMoves(moves, length));
+        } else {
+            this.send(WireProtocol.movesToText(moves, length));
+        }
+    }
+
+    @Override
+    public void useBinary() {
+        this.binary = true;
+    }
+
+    private void buffer(byte[] bytes) throws IOException {
+        if (this.closing || this.behind) {
+            throw new IOException("Connection is closed");
+        }
+        synchronized (this.unflushed) {
+            this.unflushed.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Queues the messages as one buffer, it is written by the loop thread
+     * @throws IOException if the client is too far behind, it is disconnected
+     */
+    @Override
+    public void flush() throws IOException {
+        synchronized (this.unflushed) {
+            if (this.unflushed.size() == 0) return;
+            int size = this.unflushed.size();
+            if (this.pendingBytes.addAndGet(size) > MAX_PENDING_BYTES) {
+                this.pendingBytes.addAndGet(-size);
+                this.unflushed.reset();
+                // Nothing more is buffered once behind is set, so it is only disconnected once
+                this.behind = true;
+                this.loop.execute(this::disconnect);
+                throw new IOException("Client is too far behind, disconnecting " + this.channel);
+            }
+            this.pending.add(ByteBuffer.wrap(this.unflushed.toByteArray()));
+            this.unflushed.reset();
+        }
+        if (this.writing.compareAndSet(false, true)) {
+            this.loop.execute(this::enableWrite);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.flush();
+        } catch (IOException e) {
+            //closed anyway
+        }
+        this.closing = true;
+        if (this.writing.compareAndSet(false, true)) {
+            this.loop.execute(this::enableWrite);
+        }
+    }
+
+    private void enableWrite() {
+        if (this.closed) return;
+        this.key.interestOps(this.key.interestOps() | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Write as much of the pending lines as the channel takes
+     */
+    void onWritable() {
+        try {
+            ByteBuffer buffer;
+            while ((buffer = this.pending.peek()) != null) {
+                this.channel.write(buffer);
+                if (buffer.hasRemaining()) return;
+                this.pending.poll();
+                this.pendingBytes.addAndGet(-buffer.capacity());
+            }
+        } catch (IOException e) {
+            this.disconnect();
+            return;
+        }
+        if (this.closing) {
+            this.closeNow();
+            return;
+        }
+        this.key.interestOps(this.key.interestOps() & ~SelectionKey.OP_WRITE);
+        this.writing.set(false);
+        //a line may have been queued after the queue was found empty
+        if (!this.pending.isEmpty() && this.writing.compareAndSet(false, true)) {
+            this.enableWrite();
+        }
+    }
+
+    /**
+     * Read what the client sent and handle every complete line
+     */
+    void onReadable() {
+        int n;
+        try {
+            n = this.channel.read(this.readBuffer);
+        } catch (IOException e) {
+            this.disconnect();
+            return;
+        }
+        if (n == -1) {
+            this.disconnect();
+            return;
+        }
+        this.readBuffer.flip();
+        while (this.readBuffer.hasRemaining() && !this.closed) {
+            byte b = this.readBuffer.get();
+            if (b == '\n' && this.lastWasCR) {
+                this.lastWasCR = false;
+                continue;
+            }
+            this.lastWasCR = b == '\r';
+            if (b == '\n' || b == '\r') {
+                String text = new String(this.line.toByteArray(), StandardCharsets.ISO_8859_1);
+                this.line.reset();
+                this.handleLine(text);
+            } else if (this.line.size() >= MAX_LINE_LENGTH) {
+                System.out.println("Line too long, disconnecting " + this.channel);
+                this.disconnect();
+            } else {
+                this.line.write(b);
+            }
+        }
+        this.readBuffer.clear();
+    }
+
+    private void handleLine(String text) {
+        if (this.username == null) {
+            System.out.println("Received " + text);
+            this.username = this.server.handshake(this, text);
+        } else {
+            ServerEvent event = ServerEvent.parse(text, this.username);
+            if (event == null) {
+                System.out.println("Unknown command from " + this.username + ": " + text);
+                return;
+            }
+            // Moves arrive many times a second per match, logging them would hold up the whole loop
+            if (event.getType() != ServerEvent.Type.MOVE) {
+                System.out.println("Received " + text);
+            }
+            this.server.addEvent(event);
+        }
+    }
+
+    /**
+     * The connection broke or the client left, the same as the end of ConnectionHandler.run
+     */
+    private void disconnect() {
+        if (this.disconnected) return;
+        this.disconnected = true;
+        this.closeNow();
+        if (this.username != null) {
+            System.out.println("Thread stopped " + this.username);
+            this.server.addEvent(ServerEvent.offline(this.username));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.channel.toString();
+    }
+
+    private void closeNow() {
+        if (this.closed) return;
+        this.closed = true;
+        this.closing = true;
+        this.key.cancel();
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            System.out.println("Error closing " + this.channel);
+        }
+    }
+}
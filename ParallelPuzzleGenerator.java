@@ -0,0 +1,147 @@
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates puzzles with several independent difficulty climbers at once.
+ * Each worker thread runs its own PuzzleGeneratorAStar and keeps taking the next climb
+ * number. The calling thread adds the puzzles of the climbs to the shared PuzzleManager
+ * in climb order, which sorts them into levels and stops accepting puzzles for a level
+ * once it is full. Adding in climb order makes the result of a seed the same as
+ * PuzzleGeneratorAStar.generateAndAddPuzzles, whatever the number of threads.
+ *
+ * With -Dgridlock.candidateThreads=n the climbers also share a pool of n threads to solve
+ * the candidates of each difficulty step on, see PuzzleGeneratorAStar.setExecutor. Worth it
+ * when there are more cores than climbers, such as a full regeneration on a build machine.
+ */
+public class ParallelPuzzleGenerator implements PuzzleGenerator {
+	//threads solving candidates for the climbers, 0 to solve them on the climber's thread
+	public static final int CANDIDATE_THREADS = Integer.getInteger("gridlock.candidateThreads", 0);
+	//climbs each worker may run ahead of the ones the caller has added
+	private static final int CLIMBS_AHEAD_PER_THREAD = 2;
+	private final int numThreads;
+
+	/**
+	 * @pre numThreads > 0
+	 * @param numThreads, the number of climbers to run at once
+	 */
+	public ParallelPuzzleGenerator(int numThreads) {
+		this.numThreads = numThreads;
+	}
+
+	/**
+	 * Same as generateAndAddPuzzles(PuzzleManager, int, long) with a random seed.
+	 */
+	@Override
+	public void generateAndAddPuzzles(PuzzleManager puzzleManager, int maxPuzzlesPerLevel) {
+		this.generateAndAddPuzzles(puzzleManager, maxPuzzlesPerLevel, new Random().nextLong());
+	}
+
+	/**
+	 * Runs the climbers until every level of the manager has maxPuzzlesPerLevel puzzles.
+	 * Blocks until they are all done, interrupting the calling thread stops them.
+	 * @throws RuntimeException if a climb threw anything, the climbers are stopped
+	 */
+	@Override
+	public void generateAndAddPuzzles(PuzzleManager puzzleManager, int maxPuzzlesPerLevel, long seed) {
+		ExecutorService workers = Executors.newFixedThreadPool(this.numThreads, r -> {
+			Thread worker = new Thread(r, "PuzzleGenWorker");
+			worker.setDaemon(true);
+			return worker;
+		});
+		ExecutorService candidates = CANDIDATE_THREADS <= 0 ? null : Executors.newFixedThreadPool(CANDIDATE_THREADS, r -> {
+			Thread solver = new Thread(r, "PuzzleGenCandidate");
+			solver.setDaemon(true);
+			return solver;
+		});
+		AtomicInteger nextClimb = new AtomicInteger(0);
+		BlockingQueue<Climb> finished = new LinkedBlockingQueue<>();
+		//a permit for every climb started but not yet added, so waiting stays small
+		Semaphore ahead = new Semaphore(this.numThreads * CLIMBS_AHEAD_PER_THREAD);
+		for(int i = 0; i < this.numThreads; i++) {
+			workers.execute(() -> {
+				PuzzleGeneratorAStar climber = new PuzzleGeneratorAStar();
+				climber.setExecutor(candidates);
+				while(!Thread.currentThread().isInterrupted()) {
+					try {
+						ahead.acquire();
+					} catch (InterruptedException e) {
+						return;
+					}
+					int climb = nextClimb.getAndIncrement();
+					try {
+						finished.add(new Climb(climb, climber.climb(PuzzleGeneratorAStar.getClimbSeed(seed, climb))));
+					} catch (Throwable e) {
+						//the caller waits for every climb in order, so it has to hear about this one, even an Error
+						finished.add(new Climb(climb, e));
+						return;
+					}
+				}
+			});
+		}
+		try {
+			PuzzleGeneratorAStar intake = new PuzzleGeneratorAStar();
+			//climbs that finished before an earlier climb
+			Map<Integer, List<PuzzleGame>> waiting = new HashMap<>();
+			int next = 0;
+			while(!puzzleManager.isFull(maxPuzzlesPerLevel)) {
+				Climb climb = finished.take();
+				if(climb.error != null) {
+					throw new RuntimeException("Climb " + climb.number + " failed", climb.error);
+				}
+				waiting.put(climb.number, climb.puzzles);
+				while(waiting.containsKey(next) && !puzzleManager.isFull(maxPuzzlesPerLevel)) {
+					intake.addClimbedPuzzles(puzzleManager, waiting.remove(next), maxPuzzlesPerLevel);
+					ahead.release();
+					next++;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			workers.shutdownNow();
+			if(candidates != null) candidates.shutdownNow();
+		}
+	}
+
+	/**
+	 * A single puzzle is generated by one climber on the calling thread
+	 */
+	@Override
+	public PuzzleGame generatePuzzle(int minMoves) throws Exception {
+		return new PuzzleGeneratorAStar().generatePuzzle(minMoves);
+	}
+
+	@Override
+	public PuzzleGame generatePuzzle(int minMoves, long seed) throws Exception {
+		return new PuzzleGeneratorAStar().generatePuzzle(minMoves, seed);
+	}
+
+	/**
+	 * The puzzles found by one climb, or why it failed
+	 */
+	private static class Climb {
+		private final int number;
+		private final List<PuzzleGame> puzzles;
+		private final Throwable error;
+
+		public Climb(int number, List<PuzzleGame> puzzles) {
+			this.number = number;
+			this.puzzles = puzzles;
+			this.error = null;
+		}
+
+		public Climb(int number, Throwable error) {
+			this.number = number;
+			this.puzzles = null;
+			this.error = error;
+		}
+	}
+}
@@ -0,0 +1,464 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed distances to the goal of simplified puzzles, used by PatternDatabaseHeuristic.
+ *
+ * A puzzle is simplified to a pattern: the main vehicle, the vehicles that can enter its
+ * lane on the way to the exit, and as many of the vehicles that can enter their lanes as fit
+ * in maxEntries. Removing vehicles only makes a puzzle easier, so the distance of the pattern
+ * is a lower bound of the real distance. The distances of every placement of the pattern
+ * vehicles are kept in one byte array, indexed by the positions of the vehicles. Every puzzle
+ * also gives the tables of the smaller patterns of the main vehicle and the first vehicles
+ * chosen, since few puzzles have all the vehicles of a large pattern.
+ *
+ * A table only depends on its pattern, the board size, the exit and the orientation, length
+ * and lane of the pattern vehicles. Any puzzle on a board of that size and exit that has a
+ * vehicle in the lane of every pattern vehicle, with the same orientation and length, is at
+ * least as hard as the pattern, so the table is used for it whatever its other vehicles,
+ * including the puzzles made by the generators.
+ *
+ * The file starts with int magic, byte version, int numTables, then for every table
+ *   int numRows, int numCols, int exitRow, int exitCol, int numVehicles, for every pattern
+ *   vehicle boolean vertical, int length, int lane, then int size, the distances.
+ *
+ * Usage: java PatternDatabase [max entries per table]
+ * builds the tables of the saved puzzles and writes them to DEFAULT_FILE. getDefault() does
+ * the same on first use if the file is missing or cannot be read, which takes a few seconds,
+ * so the generated file is not kept with the puzzles.
+ */
+public class PatternDatabase {
+    //"GLPD"
+    public static final int MAGIC = 0x474C5044;
+    public static final byte VERSION = 2;
+    public static final String DEFAULT_FILE = "src/puzzles.pdb";
+    public static final int DEFAULT_MAX_ENTRIES = 1 << 18;
+    //distance of a placement the goal cannot be reached from, or that is not a valid board
+    public static final int UNKNOWN = -1;
+    private static PatternDatabase defaultDatabase;
+    //the tables by pattern, puzzles with the same pattern share one table
+    private final Map<String, Table> tables;
+
+    private PatternDatabase(Map<String, Table> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Loads DEFAULT_FILE on first use, builds and writes it first if it does not exist or
+     * cannot be read, such as a file of an older version
+     * @return the database, empty if there are no saved puzzles
+     */
+    public static synchronized PatternDatabase getDefault() {
+        if (defaultDatabase == null) {
+            if (new File(DEFAULT_FILE).exists()) {
+                try {
+                    defaultDatabase = load(DEFAULT_FILE);
+                } catch (IOException e) {
+                    System.out.println("Error reading " + DEFAULT_FILE + ": " + e.getMessage() + ", building it again");
+                }
+            }
+            if (defaultDatabase == null) {
+                defaultDatabase = buildDefault(DEFAULT_MAX_ENTRIES);
+            }
+        }
+        return defaultDatabase;
+    }
+
+    public static void main(String[] args) {
+        int maxEntries = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_MAX_ENTRIES;
+        buildDefault(maxEntries);
+    }
+
+    /**
+     * Builds the tables of the saved puzzles and writes them to DEFAULT_FILE
+     * @param maxEntries, the most placements a table may have
+     * @return the database, also if it could not be written
+     */
+    private static PatternDatabase buildDefault(int maxEntries) {
+        GridlockGame game = new GridlockGame();
+        List<PuzzleGame> puzzles = new ArrayList<>();
+        for (int level = 0; level < GridlockGame.LEVEL_NAMES.length; level++) {
+            for (int id : game.getPuzzleIds(level)) {
+                PuzzleGame puzzle = game.getPuzzle(level, id);
+                if (puzzle != null) puzzles.add(puzzle);
+            }
+        }
+        long start = System.currentTimeMillis();
+        PatternDatabase database = build(puzzles, maxEntries);
+        System.out.println("Built " + database.getNumTables() + " tables, " + database.getNumEntries() + " entries in "
+                + (System.currentTimeMillis() - start) + "ms");
+        if (puzzles.isEmpty()) return database;
+        try {
+            database.write(DEFAULT_FILE);
+        } catch (IOException e) {
+            System.out.println("Error writing " + DEFAULT_FILE + ": " + e.getMessage());
+        }
+        return database;
+    }
+
+    /**
+     * @pre every puzzle can be encoded by PuzzleLayout
+     * @param puzzles
+     * @param maxEntries, the most placements a table may have
+     * @return the tables of the patterns of the puzzles
+     */
+    public static PatternDatabase build(List<PuzzleGame> puzzles, int maxEntries) {
+        Map<String, Table> tables = new HashMap<>();
+        for (PuzzleGame puzzle : puzzles) {
+            PuzzleLayout layout = new PuzzleLayout(puzzle);
+            if (!layout.canReachExit()) continue;
+            List<Integer> pattern = choosePattern(layout, puzzle, maxEntries);
+            //the smaller patterns are found in many more puzzles than the whole one
+            for (int size = 2; size <= pattern.size(); size++) {
+                int[] vehicles = sortPattern(layout, pattern.subList(0, size));
+                String key = getPattern(layout, vehicles);
+                if (tables.containsKey(key)) continue;
+                tables.put(key, Table.build(puzzle, layout, vehicles));
+            }
+        }
+        return new PatternDatabase(tables);
+    }
+
+    /**
+     * @throws IOException if the file cannot be read or is not a pattern database
+     */
+    public static PatternDatabase load(String path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a pattern database");
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported pattern database version " + version);
+            }
+            int numTables = in.readInt();
+            Map<String, Table> tables = new HashMap<>();
+            for (int t = 0; t < numTables; t++) {
+                int[] board = {in.readInt(), in.readInt(), in.readInt(), in.readInt()};
+                int numVehicles = in.readInt();
+                boolean[] vertical = new boolean[numVehicles];
+                int[] length = new int[numVehicles];
+                int[] lane = new int[numVehicles];
+                for (int k = 0; k < numVehicles; k++) {
+                    vertical[k] = in.readBoolean();
+                    length[k] = in.readInt();
+                    lane[k] = in.readInt();
+                }
+                byte[] distances = new byte[in.readInt()];
+                in.readFully(distances);
+                Table table = new Table(board, vertical, length, lane, distances);
+                tables.put(table.getPattern(), table);
+            }
+            return new PatternDatabase(tables);
+        }
+    }
+
+    /**
+     * Write the tables, the file is replaced in one step.
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String path) throws IOException {
+        Path temp = Paths.get(path + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp.toFile())))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeInt(this.tables.size());
+            for (Table table : this.tables.values()) {
+                for (int value : table.board) {
+                    out.writeInt(value);
+                }
+                out.writeInt(table.vertical.length);
+                for (int k = 0; k < table.vertical.length; k++) {
+                    out.writeBoolean(table.vertical[k]);
+                    out.writeInt(table.length[k]);
+                    out.writeInt(table.lane[k]);
+                }
+                out.writeInt(table.distances.length);
+                out.write(table.distances);
+            }
+        }
+        Files.move(temp, Paths.get(path), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param layout
+     * @return the tables whose pattern vehicles are all in the layout, Table.getLayoutIndices
+     * finds them
+     */
+    public List<Table> getTables(PuzzleLayout layout) {
+        List<Table> matching = new ArrayList<>();
+        for (Table table : this.tables.values()) {
+            if (table.getLayoutIndices(layout) != null) matching.add(table);
+        }
+        return matching;
+    }
+
+    public int getNumTables() {
+        return this.tables.size();
+    }
+
+    public long getNumEntries() {
+        long entries = 0;
+        for (Table table : this.tables.values()) {
+            entries += table.distances.length;
+        }
+        return entries;
+    }
+
+    /**
+     * @param pattern, the indices of the pattern vehicles in the layout
+     * @return the board size, the exit and the orientation, length and lane of every pattern vehicle
+     */
+    private static String getPattern(PuzzleLayout layout, int[] pattern) {
+        StringBuilder key = new StringBuilder();
+        key.append(layout.getNumRows()).append('x').append(layout.getNumCols())
+                .append(' ').append(layout.getExitRow()).append(',').append(layout.getExitCol());
+        for (int i : pattern) {
+            key.append(' ').append(layout.isVertical(i) ? 'v' : 'h').append(layout.getLength(i)).append('@').append(layout.getLane(i));
+        }
+        return key.toString();
+    }
+
+    /**
+     * The main vehicle, then the vehicles that can enter the lane of a vehicle already in the
+     * pattern, nearest to the main vehicle first, while the table stays within maxEntries.
+     * @return the indices in the layout of the pattern vehicles, in the order they were chosen
+     */
+    private static List<Integer> choosePattern(PuzzleLayout layout, PuzzleGame puzzle, int maxEntries) {
+        int main = layout.getMainIndex();
+        List<Integer> pattern = new ArrayList<>();
+        pattern.add(main);
+        long entries = Table.getNumPositions(layout, main);
+        //lanes are taken in the order they join the pattern, the main lane only towards the exit
+        for (int next = 0; next < pattern.size(); next++) {
+            int owner = pattern.get(next);
+            long lane = owner == main ? getPathToExit(layout, puzzle) : layout.getLaneCells(owner, 0, Integer.MAX_VALUE);
+            for (int i = 0; i < layout.getNumVehicles(); i++) {
+                if (pattern.contains(i) || (layout.getLaneCells(i, 0, Integer.MAX_VALUE) & lane) == 0) continue;
+                long positions = Table.getNumPositions(layout, i);
+                if (entries * positions > maxEntries) continue;
+                entries *= positions;
+                pattern.add(i);
+            }
+        }
+        return pattern;
+    }
+
+    /**
+     * @param pattern, the indices in the layout of the main vehicle and some other vehicles
+     * @return the main vehicle first and the others by orientation, length and lane, so the
+     * same pattern always gives the same table
+     */
+    private static int[] sortPattern(PuzzleLayout layout, List<Integer> pattern) {
+        List<Integer> sorted = new ArrayList<>(pattern.subList(1, pattern.size()));
+        sorted.sort(Comparator.comparing((Integer i) -> layout.isVertical(i))
+                .thenComparingInt(layout::getLength).thenComparingInt(layout::getLane));
+        sorted.add(0, pattern.get(0));
+        int[] indices = new int[sorted.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = sorted.get(i);
+        }
+        return indices;
+    }
+
+    /**
+     * @return the cells from the main vehicle's starting position to the exit
+     */
+    private static long getPathToExit(PuzzleLayout layout, PuzzleGame puzzle) {
+        int main = layout.getMainIndex();
+        int pos = layout.getPos(layout.encode(puzzle), main);
+        int exit = layout.isVertical(main) ? layout.getExitRow() : layout.getExitCol();
+        return exit > pos ? layout.getLaneCells(main, pos, exit) : layout.getLaneCells(main, exit, pos + layout.getLength(main) - 1);
+    }
+
+    /**
+     * The distances of every placement of the vehicles of one pattern
+     */
+    public static class Table {
+        //numRows, numCols, exitRow, exitCol
+        private final int[] board;
+        //the pattern vehicles, the first one is the main vehicle and varies slowest in the index
+        private final boolean[] vertical;
+        private final int[] length;
+        private final int[] lane;
+        private final byte[] distances;
+
+        private Table(int[] board, boolean[] vertical, int[] length, int[] lane, byte[] distances) {
+            this.board = board;
+            this.vertical = vertical;
+            this.length = length;
+            this.lane = lane;
+            this.distances = distances;
+        }
+
+        /**
+         * Explore every placement of the pattern vehicles backwards from the solved ones.
+         * @param pattern, the indices in full of the pattern vehicles
+         */
+        private static Table build(PuzzleGame puzzle, PuzzleLayout full, int[] pattern) {
+            PuzzleGame patternGame = new PuzzleGame(puzzle.getNumRows(), puzzle.getNumCols(), puzzle.getExitRow(), puzzle.getExitCol());
+            //addVehicle numbers the vehicles in turn, so pattern vehicle k gets id k and the main vehicle keeps 0
+            for (int i : pattern) {
+                patternGame.addVehicle(new Vehicle(puzzle.getVehicle(full.getId(i))));
+            }
+            PuzzleLayout layout = new PuzzleLayout(patternGame);
+            int[] index = new int[pattern.length];
+            for (int k = 0; k < pattern.length; k++) {
+                for (int i = 0; i < layout.getNumVehicles(); i++) {
+                    if (layout.getId(i) == k) index[k] = i;
+                }
+            }
+            int size = 1;
+            for (int k = 0; k < pattern.length; k++) {
+                size *= getNumPositions(layout, index[k]);
+            }
+            byte[] distances = new byte[size];
+            Arrays.fill(distances, (byte) UNKNOWN);
+            long[] keys = new long[size];
+            int[] queue = new int[size];
+            int tail = 0;
+            for (int entry = 0; entry < size; entry++) {
+                long key = 0;
+                long occupied = 0;
+                boolean valid = true;
+                int rest = entry;
+                for (int k = pattern.length - 1; k >= 0; k--) {
+                    int positions = getNumPositions(layout, index[k]);
+                    key = layout.setPos(key, index[k], rest % positions + getMinPos(layout, index[k]));
+                    rest /= positions;
+                    long cells = layout.getCells(key, index[k]);
+                    valid &= (occupied & cells) == 0 && isOnBoard(layout, key, index[k]);
+                    occupied |= cells;
+                }
+                keys[entry] = key;
+                if (valid && layout.isSolved(key)) {
+                    distances[entry] = 0;
+                    queue[tail++] = entry;
+                }
+            }
+            //moves can be undone, so the states one move from a state are also the ones it is reached from
+            long[] successors = new long[layout.getMaxSuccessors()];
+            for (int head = 0; head < tail; head++) {
+                int entry = queue[head];
+                int distance = distances[entry] + 1;
+                int numSuccessors = layout.getSuccessors(keys[entry], successors);
+                for (int s = 0; s < numSuccessors; s++) {
+                    int next = getIndex(layout, index, successors[s]);
+                    if (distances[next] == UNKNOWN) {
+                        distances[next] = (byte) Math.min(distance, Byte.MAX_VALUE);
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            int[] board = {puzzle.getNumRows(), puzzle.getNumCols(), puzzle.getExitRow(), puzzle.getExitCol()};
+            boolean[] vertical = new boolean[pattern.length];
+            int[] length = new int[pattern.length];
+            int[] lane = new int[pattern.length];
+            for (int k = 0; k < pattern.length; k++) {
+                vertical[k] = full.isVertical(pattern[k]);
+                length[k] = full.getLength(pattern[k]);
+                lane[k] = full.getLane(pattern[k]);
+            }
+            return new Table(board, vertical, length, lane, distances);
+        }
+
+        /**
+         * @return the key of the table in the database, the same as getPattern(layout, pattern)
+         * of the puzzle it was built from
+         */
+        private String getPattern() {
+            StringBuilder key = new StringBuilder();
+            key.append(this.board[0]).append('x').append(this.board[1])
+                    .append(' ').append(this.board[2]).append(',').append(this.board[3]);
+            for (int k = 0; k < this.vertical.length; k++) {
+                key.append(' ').append(this.vertical[k] ? 'v' : 'h').append(this.length[k]).append('@').append(this.lane[k]);
+            }
+            return key.toString();
+        }
+
+        /**
+         * @return the number of positions of the vehicle, the main vehicle may stand one cell past an edge
+         */
+        private static int getNumPositions(PuzzleLayout layout, int i) {
+            int size = layout.isVertical(i) ? layout.getNumRows() : layout.getNumCols();
+            return size - layout.getLength(i) + 1 + (i == layout.getMainIndex() ? 2 : 0);
+        }
+
+        private static int getMinPos(PuzzleLayout layout, int i) {
+            return i == layout.getMainIndex() ? -1 : 0;
+        }
+
+        /**
+         * Only the main vehicle may leave the board, and only through the exit
+         */
+        private static boolean isOnBoard(PuzzleLayout layout, long key, int i) {
+            int pos = layout.getPos(key, i);
+            int size = layout.isVertical(i) ? layout.getNumRows() : layout.getNumCols();
+            if (pos >= 0 && pos + layout.getLength(i) <= size) return true;
+            int exit = layout.isVertical(i) ? layout.getExitRow() : layout.getExitCol();
+            return pos == -1 ? exit == 0 : exit == size - 1;
+        }
+
+        private static int getIndex(PuzzleLayout layout, int[] index, long key) {
+            int entry = 0;
+            for (int k = 0; k < index.length; k++) {
+                entry = entry * getNumPositions(layout, index[k]) + layout.getPos(key, index[k]) - getMinPos(layout, index[k]);
+            }
+            return entry;
+        }
+
+        /**
+         * Vehicles with the same orientation, length and lane can stand in for each other,
+         * so any unused one is taken.
+         * @param layout
+         * @return for every pattern vehicle the index of a different vehicle of the layout in its
+         * lane with its orientation and length, the main vehicle for the first one, or null if
+         * the board differs or some pattern vehicle has none
+         */
+        public int[] getLayoutIndices(PuzzleLayout layout) {
+            if (layout.getNumRows() != this.board[0] || layout.getNumCols() != this.board[1]
+                    || layout.getExitRow() != this.board[2] || layout.getExitCol() != this.board[3]) {
+                return null;
+            }
+            int[] index = new int[this.vertical.length];
+            boolean[] used = new boolean[layout.getNumVehicles()];
+            for (int k = 0; k < index.length; k++) {
+                index[k] = -1;
+                for (int i = 0; i < layout.getNumVehicles() && index[k] == -1; i++) {
+                    if (used[i] || (i == layout.getMainIndex()) != (k == 0) || layout.isVertical(i) != this.vertical[k]
+                            || layout.getLength(i) != this.length[k] || layout.getLane(i) != this.lane[k]) continue;
+                    used[i] = true;
+                    index[k] = i;
+                }
+                if (index[k] == -1) return null;
+            }
+            return index;
+        }
+
+        /**
+         * @param layout, a layout getLayoutIndices found the pattern in
+         * @param index, as returned by getLayoutIndices(layout)
+         * @param key, a state of the layout
+         * @return the distance of the pattern vehicles in the state, UNKNOWN if the pattern cannot be solved
+         */
+        public int getDistance(PuzzleLayout layout, int[] index, long key) {
+            return this.distances[getIndex(layout, index, key)];
+        }
+    }
+}
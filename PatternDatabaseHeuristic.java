@@ -0,0 +1,39 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Looks up the distance of the pattern vehicles in every PatternDatabase table whose pattern
+ * the puzzle contains and takes the largest of them and CompactBlockingChainHeuristic, all are
+ * consistent so the maximum is too.
+ * Puzzles that contain no pattern only use CompactBlockingChainHeuristic.
+ */
+public class PatternDatabaseHeuristic implements Heuristic<CompactPuzzleState> {
+    private final PatternDatabase database;
+    private final CompactBlockingChainHeuristic blockingChain;
+    //the tables of the last layout looked up, a search only ever uses one layout
+    private PuzzleLayout layout;
+    private List<PatternDatabase.Table> tables;
+    private List<int[]> indices;
+
+    public PatternDatabaseHeuristic(PatternDatabase database) {
+        this.database = database;
+        this.blockingChain = new CompactBlockingChainHeuristic();
+    }
+
+    @Override
+    public int getH(CompactPuzzleState node) {
+        int h = this.blockingChain.getH(node);
+        if (node.getLayout() != this.layout) {
+            this.layout = node.getLayout();
+            this.tables = this.database.getTables(this.layout);
+            this.indices = new ArrayList<>();
+            for (PatternDatabase.Table table : this.tables) {
+                this.indices.add(table.getLayoutIndices(this.layout));
+            }
+        }
+        for (int t = 0; t < this.tables.size(); t++) {
+            h = Math.max(h, this.tables.get(t).getDistance(this.layout, this.indices.get(t), node.getKey()));
+        }
+        return h;
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The puzzles the server hands out to matches, loaded once and never changed.
+ * Every puzzle is kept in the forms that are sent to the clients, the text of the line
+ * protocol and the frame of WireProtocol, so starting a match only has to pick one.
+ * Load a new catalog to pick up new puzzles.
+ */
+public class PuzzleCatalog {
+    //matches are played on easy and medium puzzles
+    public static final int[] MATCH_LEVELS = {GridlockGame.EASY, GridlockGame.MEDIUM};
+    //one array per level that has puzzles
+    private final Entry[][] puzzles;
+    private final int numPuzzles;
+
+    private PuzzleCatalog(Entry[][] puzzles) {
+        this.puzzles = puzzles;
+        int numPuzzles = 0;
+        for (Entry[] level : puzzles) {
+            numPuzzles += level.length;
+        }
+        this.numPuzzles = numPuzzles;
+    }
+
+    /**
+     * Load the match levels of the saved puzzles
+     * @return the catalog
+     */
+    public static PuzzleCatalog load() {
+        return load(new GridlockGame(), MATCH_LEVELS);
+    }
+
+    /**
+     * @pre game != null
+     * @post true
+     * @param game, the game to take the puzzles from
+     * @param levels, the levels to take
+     * @return the catalog
+     */
+    public static PuzzleCatalog load(GridlockGame game, int[] levels) {
+        List<Entry[]> puzzles = new ArrayList<>();
+        for (int level : levels) {
+            List<Entry> entries = new ArrayList<>();
+            for (int puzzleId : game.getPuzzleIds(level)) {
+                PuzzleGame puzzle = game.getPuzzle(level, puzzleId);
+                if (puzzle != null) entries.add(new Entry(puzzle));
+            }
+            if (!entries.isEmpty()) puzzles.add(entries.toArray(new Entry[0]));
+        }
+        return new PuzzleCatalog(puzzles.toArray(new Entry[0][]));
+    }
+
+    /**
+     * Picks a level and then a puzzle of that level, both at random
+     * @param rand
+     * @return the puzzle to send to the clients, null if the catalog is empty
+     */
+    public Entry getRandomPuzzle(Random rand) {
+        if (this.puzzles.length == 0) return null;
+        Entry[] level = this.puzzles[rand.nextInt(this.puzzles.length)];
+        return level[rand.nextInt(level.length)];
+    }
+
+    public int getNumPuzzles() {
+        return this.numPuzzles;
+    }
+
+    /**
+     * A puzzle of the catalog, encoded for both protocols
+     */
+    public static class Entry {
+        private final String text;
+        private final byte[] frame;
+        private final MatchBoard board;
+
+        private Entry(PuzzleGame puzzle) {
+            this.text = puzzle.getStringRep();
+            this.frame = WireProtocol.encodePuzzle(puzzle);
+            this.board = new MatchBoard(puzzle);
+        }
+
+        /**
+         * @return a board of the puzzle in its initial state, for one player of a match
+         */
+        public MatchBoard newBoard() {
+            return this.board.copy();
+        }
+
+        /**
+         * @return the getStringRep of the puzzle
+         */
+        public String getText() {
+            return this.text;
+        }
+
+        /**
+         * @return the PUZZLE frame of the puzzle, must not be changed
+         */
+        public byte[] getFrame() {
+            return this.frame;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One-shot conversion of the serialized .sav puzzles of FileSystemImp into .gpz files
+ * of CompactFileSystem. Every .sav file is written next to itself as a .gpz file, read
+ * back and compared, and only deleted once the copy is known to be the same puzzle.
+ *
+ * With --pack the .gpz puzzles of every level are then also written into a single PuzzlePack.
+ *
+ * Usage: java PuzzleFileMigrator [puzzle folder] [--pack pack file]
+ * the default folder is the one GridlockGame loads from.
+ */
+public class PuzzleFileMigrator {
+	private static final String DEFAULT_FOLDER = "src/puzzles/";
+	private static final String OLD_EXTENSION = ".sav";
+
+	public static void main(String[] args) {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		String packFile = null;
+		int pack = arguments.indexOf("--pack");
+		if(pack != -1 && pack + 1 < arguments.size()) {
+			packFile = arguments.remove(pack + 1);
+			arguments.remove(pack);
+		}
+		String mainFolder = arguments.size() > 0 ? arguments.get(0) : DEFAULT_FOLDER;
+		int migrated = 0;
+		int failed = 0;
+		for(String level : GridlockGame.LEVEL_NAMES) {
+			File folder = new File(mainFolder, level);
+			File[] files = folder.listFiles();
+			if(files == null) {
+				System.out.println("Cannot access folder " + folder.getPath());
+				continue;
+			}
+			for(File f : files) {
+				if(!f.getName().endsWith(OLD_EXTENSION)) continue;
+				if(migrate(f)) {
+					migrated++;
+				} else {
+					System.out.println("Could not migrate " + f.getPath());
+					failed++;
+				}
+			}
+		}
+		System.out.println("Migrated " + migrated + " puzzles, " + failed + " failed");
+		if(packFile != null) {
+			writePack(mainFolder, packFile);
+		}
+	}
+
+	private static void writePack(String mainFolder, String packFile) {
+		List<String> levelNames = new ArrayList<>();
+		List<List<PuzzleGame>> levels = new ArrayList<>();
+		int numPuzzles = 0;
+		for(String level : GridlockGame.LEVEL_NAMES) {
+			List<PuzzleGame> puzzles = new CompactFileSystem().loadPuzzlesFromFolder(new File(mainFolder, level).getPath());
+			if(puzzles == null) continue;
+			levelNames.add(level);
+			levels.add(puzzles);
+			numPuzzles += puzzles.size();
+		}
+		try {
+			PuzzlePack.write(packFile, levelNames, levels);
+			System.out.println("Packed " + numPuzzles + " puzzles into " + packFile);
+		} catch (IOException e) {
+			System.out.println("Error writing " + packFile + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * @param savFile
+	 * @return true if the puzzle is now stored in a .gpz file and the .sav file is deleted
+	 */
+	private static boolean migrate(File savFile) {
+		PuzzleGame puzzle = new FileSystemImp().loadPuzzleGame(savFile.getPath());
+		if(puzzle == null) return false;
+		String name = savFile.getPath();
+		name = name.substring(0, name.length() - OLD_EXTENSION.length());
+		CompactFileSystem compact = new CompactFileSystem();
+		compact.savePuzzleGame(puzzle, name);
+		PuzzleGame copy = compact.loadPuzzleGame(name + CompactFileSystem.EXTENSION);
+		if(!isSamePuzzle(puzzle, copy)) return false;
+		return savFile.delete();
+	}
+
+	private static boolean isSamePuzzle(PuzzleGame puzzle, PuzzleGame copy) {
+		if(copy == null || !puzzle.equals(copy)) return false;
+		return puzzle.getId() == copy.getId() && puzzle.getMinMoves() == copy.getMinMoves();
+	}
+}
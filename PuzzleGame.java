@@ -901,6 +901,7 @@ public class PuzzleGame implements Serializable {
             v.setPos(newRow, newCol);
             this.fillVehicleSpace(v, id);
             moves += 1;
+            this.notifyMoved();
         if(isSolved()) {
         	 if (nuic != null) {
      			nuic.puzzleDone();
@@ -967,6 +968,26 @@ public class PuzzleGame implements Serializable {
 		}
     }
 
+    /**
+     * Place every vehicle at a new location at once and rebuild the board.
+     * Unlike moveVehicle the vehicles may pass through each other's old cells,
+     * which is needed when restoring a whole state in one go.
+     * @pre ids.length == rows.length == cols.length && vehicleMap.contains(ids[i])
+     * @post vehicleMap.getVehicle(ids[i]).getLocation(rows[i], cols[i])
+     * @param ids
+     * @param rows
+     * @param cols
+     */
+    public void setVehiclePositions(int[] ids, int[] rows, int[] cols) {
+        this.initBoard();
+        for (int i = 0; i < ids.length; i++) {
+            this.vehicleMap.get(ids[i]).setPos(rows[i], cols[i]);
+        }
+        for (Vehicle v : this.vehicleMap.values()) {
+            this.fillVehicleSpace(v, v.getID());
+        }
+    }
+
     /**
      * Resets the board to the starting state
      */
@@ -976,6 +997,9 @@ public class PuzzleGame implements Serializable {
         undo.removeAllElements();
         redo.removeAllElements();
         moves = 0;
+        if (nuic != null) {
+            nuic.puzzleReset(this);
+        }
     }
 
     /**
@@ -989,6 +1013,7 @@ public class PuzzleGame implements Serializable {
             this.board = ps.getGameBoard();
             this.vehicleMap = ps.getVehicleMap();
             moves += 1;
+            this.notifyMoved();
         }
     }
 
@@ -1002,6 +1027,16 @@ public class PuzzleGame implements Serializable {
             this.board = ps.getGameBoard();
             this.vehicleMap = ps.getVehicleMap();
             moves -=1;
+            this.notifyMoved();
+        }
+    }
+
+    /**
+     * Tell the network controller of a match that vehicles have moved
+     */
+    private void notifyMoved() {
+        if (nuic != null) {
+            nuic.vehiclesMoved(this);
         }
     }
 
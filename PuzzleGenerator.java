@@ -2,6 +2,15 @@
 public interface PuzzleGenerator {
 
 	public void generateAndAddPuzzles(PuzzleManager puzzleManager, int maxPuzzlesPerLevel);
+	/**
+	 * Same as generateAndAddPuzzles(PuzzleManager, int) but reproducible,
+	 * the same seed always adds the same puzzles.
+	 */
+	public void generateAndAddPuzzles(PuzzleManager puzzleManager, int maxPuzzlesPerLevel, long seed);
 	public PuzzleGame generatePuzzle(int minMoves) throws Exception;
+	/**
+	 * Same as generatePuzzle(int) but reproducible, the same seed always generates the same puzzle.
+	 */
+	public PuzzleGame generatePuzzle(int minMoves, long seed) throws Exception;
 	
 }
@@ -3,6 +3,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Generate a puzzle using AStar. 
@@ -16,12 +21,22 @@ public class PuzzleGeneratorAStar implements PuzzleGenerator {
     private final int boardSize;
     private final int carLength;
     private static final int TRIES_LIMIT = 1000;
+    //golden ratio, spreads the seeds of consecutive climbs
+    private static final long SEED_STEP = 0x9E3779B97F4A7C15L;
+    private final Random random;
+    //evaluates candidate puzzles in parallel, null to evaluate them one by one
+    private ExecutorService executor;
+    //the last harder puzzle found and its solution, reused by the next step of the climb
+    private PuzzleGame lastHarder;
+    private List<int[][]> lastHarderSolution;
 
     public PuzzleGeneratorAStar() {
     	this.levelMinMoves = GridlockGame.LEVEL_MIN_MOVES;
     	this.numLevels = GridlockGame.NUM_LEVELS;
     	this.boardSize = GridlockGame.DEFAULT_BOARD_SIZE;
     	this.carLength = GridlockGame.DEFAULT_CAR_LENGTH;
+    	this.random = new Random();
+    	this.executor = null;
     }
 
     public PuzzleGeneratorAStar(int numLevels, int[] levelMinMoves, int boardSize, int carLength) {
@@ -29,71 +44,115 @@ public class PuzzleGeneratorAStar implements PuzzleGenerator {
     	this.numLevels = numLevels;
     	this.boardSize = boardSize;
     	this.carLength = carLength;
+    	this.random = new Random();
+    	this.executor = null;
     }
 
-    
+    /**
+     * Solve the candidates of each difficulty step in parallel on the executor.
+     * The chosen puzzle is the same as when solving them one by one, so the output
+     * does not depend on the number of threads.
+     * @pre true
+     * @post true
+     * @param executor, the executor to solve candidates on, null to solve them one by one
+     */
+    public void setExecutor(ExecutorService executor) {
+    	this.executor = executor;
+    }
+
+
+    /**
+     * Same as generateAndAddPuzzles(PuzzleManager, int, long) with a random seed.
+     */
     @Override
     public void generateAndAddPuzzles(PuzzleManager puzzleManager, int maxPuzzlesPerLevel) {
-        int minMoves = 1;
-        int[] numLeft = getNumLeft(puzzleManager, maxPuzzlesPerLevel);
+    	this.generateAndAddPuzzles(puzzleManager, maxPuzzlesPerLevel, new Random().nextLong());
+    }
 
-        boolean[] canAdd = new boolean[this.numLevels];
-        for(int i = 0; i < this.numLevels; i++) {
-        	canAdd[i] = true;
-        }
+    /**
+     * Keeps climbing in difficulty and adds puzzles to the manager until every level is full.
+     * Climb number i is seeded with getClimbSeed(seed, i) and the puzzles of the climbs are
+     * added in climb order, so the same seed always adds the same puzzles with the same ids.
+     * Stops early if the thread is interrupted.
+     */
+    @Override
+    public void generateAndAddPuzzles(PuzzleManager puzzleManager, int maxPuzzlesPerLevel, long seed) {
+    	for(int i = 0; !puzzleManager.isFull(maxPuzzlesPerLevel) && !Thread.currentThread().isInterrupted(); i++) {
+    		this.addClimbedPuzzles(puzzleManager, this.climb(getClimbSeed(seed, i)), maxPuzzlesPerLevel);
+    	}
+    }
 
-        PuzzleGame puzzle = this.generateRandomStart();
-        while(this.sumNumLeft(numLeft) != 0) {
-            puzzle = getMoreDifficultPuzzle(puzzle, minMoves);
-			if (puzzle == null) {
-				// could not find a more difficult puzzle, needs to be restarted
-				minMoves = 0;
-				puzzle = this.generateRandomStart();
-				for(int i = 0; i < this.numLevels; i++) {
-					canAdd[i] = true;
-				}
-			} else {
-				minMoves = puzzle.getMinMoves();
-				puzzle.initState();
-				
-				for(int i = 0; i < this.numLevels-1; i++) {
-					if(minMoves >= levelMinMoves[i] && minMoves < levelMinMoves[i+1] && canAdd[i] == true && numLeft[i] != 0) {
-						puzzleManager.addNewPuzzle(i, puzzle);
-						canAdd[i] = false;
-						numLeft[i]--;
-						System.out.printf("Generated %s puzzle%n",GridlockGame.DISPLAY_LEVEL_NAMES[i]);
-					}
-				}
-				int lastIndex = this.numLevels-1;
-				if(minMoves >= levelMinMoves[lastIndex] && canAdd[lastIndex] == true && numLeft[lastIndex] != 0) {
-					puzzleManager.addNewPuzzle(lastIndex, puzzle);
-					canAdd[lastIndex] = false;
-					numLeft[lastIndex]--;
-					System.out.printf("Generated %s puzzle%n",GridlockGame.DISPLAY_LEVEL_NAMES[lastIndex]);
-				}
-				
-			}
-        }
+    /**
+     * @param seed, the seed of the whole generation run
+     * @param climb, the number of the climb
+     * @return the seed of the climb
+     */
+    public static long getClimbSeed(long seed, int climb) {
+    	return seed + (climb + 1) * SEED_STEP;
     }
-    
-    private int[] getNumLeft(PuzzleManager puzzleManager, int maxPuzzlesPerLevel) {
-    	int[] numLeft = new int[this.numLevels];
+
+    /**
+     * Starts from a random puzzle and keeps adding vehicles while that makes it harder.
+     * The result only depends on the seed, not on the executor used to solve candidates.
+     * @pre true
+     * @post true
+     * @param seed
+     * @return the first puzzle found for each level, in the order they were found.
+     * Empty if the thread was interrupted.
+     */
+    public List<PuzzleGame> climb(long seed) {
+    	this.random.setSeed(seed);
+    	List<PuzzleGame> climbed = new ArrayList<>();
+    	boolean[] canAdd = new boolean[this.numLevels];
     	for(int i = 0; i < this.numLevels; i++) {
-    		if(puzzleManager.getNumPuzzles(i) < maxPuzzlesPerLevel) {
-    			numLeft[i] = maxPuzzlesPerLevel - puzzleManager.getNumPuzzles(i);
-    		} else {
-    			numLeft[i] = 0;
+    		canAdd[i] = true;
+    	}
+    	PuzzleGame puzzle = this.generateRandomStart();
+    	while(puzzle != null) {
+    		if(Thread.currentThread().isInterrupted()) {
+    			return new ArrayList<>();
+    		}
+    		puzzle = getMoreDifficultPuzzle(puzzle, puzzle.getMinMoves());
+    		if(puzzle != null) {
+    			puzzle.initState();
+    			int level = this.getLevel(puzzle.getMinMoves());
+    			if(level != -1 && canAdd[level] == true) {
+    				climbed.add(puzzle);
+    				canAdd[level] = false;
+    			}
     		}
     	}
-    	return numLeft;
+    	return climbed;
     }
 
-    private int sumNumLeft(int[] numLeft) {
-    	int sum = 0;
-    	for(int i = 0; i < this.numLevels; i++) {
-    		sum += numLeft[i];
+    /**
+     * Adds the puzzles of a climb to their levels, unless the level is already full.
+     * @pre puzzles were returned by climb()
+     * @post true
+     * @param puzzleManager
+     * @param puzzles
+     * @param maxPuzzlesPerLevel
+     */
+    public void addClimbedPuzzles(PuzzleManager puzzleManager, List<PuzzleGame> puzzles, int maxPuzzlesPerLevel) {
+    	for(PuzzleGame puzzle : puzzles) {
+    		int level = this.getLevel(puzzle.getMinMoves());
+    		if(puzzleManager.addNewPuzzleIfRoom(level, puzzle, maxPuzzlesPerLevel)) {
+    			System.out.printf("Generated %s puzzle%n",GridlockGame.DISPLAY_LEVEL_NAMES[level]);
+    		}
+    	}
+    }
+
+    /**
+     * @param minMoves
+     * @return the level a puzzle with minMoves belongs to, or -1 if it is too easy for every level
+     */
+    private int getLevel(int minMoves) {
+    	for(int i = this.numLevels-1; i >= 0; i--) {
+    		if(minMoves >= levelMinMoves[i]) {
+    			return i;
+    		}
     	}
-    	return sum;
+    	return -1;
     }
 
     /**
@@ -109,6 +168,15 @@ public class PuzzleGeneratorAStar implements PuzzleGenerator {
 		PuzzleGame puzzle = generatePuzzle(this.boardSize, this.boardSize, minMoves);
 		return puzzle;
     }
+
+    /**
+     * Same as generatePuzzle(int), the same seed always generates the same puzzle
+     */
+	@Override
+    public PuzzleGame generatePuzzle(int minMoves, long seed) throws Exception {
+		this.random.setSeed(seed);
+		return generatePuzzle(this.boardSize, this.boardSize, minMoves);
+    }
 	
 	public PuzzleGame generatePuzzle(int width, int height, int minMoves) throws Exception {
         int movesRequired = 1;
@@ -192,7 +260,21 @@ public class PuzzleGeneratorAStar implements PuzzleGenerator {
         //List<Vehicle> possibleVehicle = puzzle.getPossibleVehicle();
         List<Vehicle> possibleVehicle = puzzle.getPossibleIntersects();
         //shuffle for random outcome, is this correct
-        Collections.shuffle(possibleVehicle);
+        Collections.shuffle(possibleVehicle, this.random);
+        //if puzzle was found by the previous step its solution is known, a vehicle that
+        //stays clear of that solution cannot make the puzzle harder, so skip it
+        boolean[][] swept = null;
+        if (puzzle == this.lastHarder && this.lastHarderSolution != null) {
+        	swept = PuzzleSolver.getSweptCells(this.lastHarderSolution);
+        	List<Vehicle> crossing = new ArrayList<>();
+        	for (Vehicle vehicle : possibleVehicle) {
+        		if (PuzzleSolver.isOnCells(vehicle, swept)) crossing.add(vehicle);
+        	}
+        	possibleVehicle = crossing;
+        }
+        if (this.executor != null) {
+        	return getMoreDifficultPuzzleParallel(puzzle, currentMoves, possibleVehicle);
+        }
         //add every possible vehicle to the board and see if it makes the game harder
         for (Vehicle vehicle : possibleVehicle) {
             //get a new board and add a random piece and see if its harder
@@ -204,7 +286,7 @@ public class PuzzleGeneratorAStar implements PuzzleGenerator {
                 if (puzzleSolved.size() - 1 > currentMoves) {
                     //found a harder puzzle
                 	newPuzzle.setMinMoves(puzzleSolved.size() - 1);
-                    return newPuzzle;
+                	return this.setLastHarder(newPuzzle, puzzleSolved);
                 }
             }
         }
@@ -212,6 +294,74 @@ public class PuzzleGeneratorAStar implements PuzzleGenerator {
         return null;
     }
 
+    /**
+     * Remember the solution of the harder puzzle for the next step of the climb
+     */
+    private PuzzleGame setLastHarder(PuzzleGame puzzle, List<int[][]> solution) {
+    	this.lastHarder = puzzle;
+    	this.lastHarderSolution = solution;
+    	return puzzle;
+    }
+
+    /**
+     * Same as getMoreDifficultPuzzle but solves the candidates on the executor.
+     * Returns the first harder candidate in list order, not the first one to finish,
+     * and cancels every candidate after it once it is found. A cancelled solve that
+     * already started stops at its next expansion, AStar checks for the interrupt.
+     *
+     * @param puzzle
+     * @param currentMoves, number of moves required to solve the current puzzle
+     * @param possibleVehicle, the candidate vehicles in the order they would be tried
+     */
+    private PuzzleGame getMoreDifficultPuzzleParallel(PuzzleGame puzzle, int currentMoves, List<Vehicle> possibleVehicle) {
+    	//index of the first harder candidate found so far, later candidates can be skipped
+    	AtomicInteger found = new AtomicInteger(Integer.MAX_VALUE);
+    	List<Future<List<int[][]>>> results = new ArrayList<>();
+    	List<PuzzleGame> candidates = new ArrayList<>();
+    	for (int i = 0; i < possibleVehicle.size(); i++) {
+    		final int index = i;
+    		final PuzzleGame newPuzzle = new PuzzleGame(puzzle);
+    		newPuzzle.addVehicle(possibleVehicle.get(i));
+    		candidates.add(newPuzzle);
+    		results.add(this.executor.submit(new Callable<List<int[][]>>() {
+    			@Override
+    			public List<int[][]> call() {
+    				if (index > found.get()) return null;
+    				List<int[][]> puzzleSolved = PuzzleSolver.solve(newPuzzle);
+    				if (puzzleSolved != null && puzzleSolved.size() - 1 > currentMoves) {
+    					found.accumulateAndGet(index, Math::min);
+    					return puzzleSolved;
+    				}
+    				return null;
+    			}
+    		}));
+    	}
+    	PuzzleGame harder = null;
+    	try {
+    		for (int i = 0; i < results.size(); i++) {
+    			if (harder != null) {
+    				results.get(i).cancel(true);
+    				continue;
+    			}
+    			List<int[][]> puzzleSolved = results.get(i).get();
+    			if (puzzleSolved != null) {
+    				harder = candidates.get(i);
+    				harder.setMinMoves(puzzleSolved.size() - 1);
+    				this.setLastHarder(harder, puzzleSolved);
+    			}
+    		}
+    	} catch (InterruptedException e) {
+    		Thread.currentThread().interrupt();
+    		for (Future<List<int[][]>> result : results) {
+    			result.cancel(true);
+    		}
+    		return null;
+    	} catch (ExecutionException e) {
+    		throw new RuntimeException(e.getCause());
+    	}
+    	return harder;
+    }
+
 	private PuzzleGame generateRandomStart() {
         List<Integer> exit = randomExit(6, 6);
         int exitRow = exit.get(0);
@@ -247,9 +397,8 @@ public class PuzzleGeneratorAStar implements PuzzleGenerator {
 	 * @return
 	 */
 	private List<Integer> randomExit(int height, int width) {
-		Random randomGenerator = new Random();
 		//generate a random exit
-		int exitRow = randomGenerator.nextInt(height);
+		int exitRow = this.random.nextInt(height);
 		int exitCol = width - 1;
 		List<Integer> exit = new ArrayList<Integer>();
 		exit.add(exitRow);
@@ -0,0 +1,50 @@
+/**
+ * A puzzle that has not been loaded yet. Only holds what is needed to list the puzzle
+ * and to load it from its source when it is played.
+ */
+public class PuzzleHandle {
+	private final int id;
+	private final int level;
+	//where the puzzle is stored in the source
+	private final long offset;
+	private final int minMoves;
+	private final PuzzleSource source;
+
+	/**
+	 * @param id, the id of the puzzle
+	 * @param level, the level of the puzzle manager the puzzle belongs to
+	 * @param offset, the location of the puzzle in the source
+	 * @param minMoves, the minimum number of moves to solve the puzzle
+	 * @param source, loads the puzzle
+	 */
+	public PuzzleHandle(int id, int level, long offset, int minMoves, PuzzleSource source) {
+		this.id = id;
+		this.level = level;
+		this.offset = offset;
+		this.minMoves = minMoves;
+		this.source = source;
+	}
+
+	/**
+	 * @return a new puzzle in its initial state, null if it cannot be loaded
+	 */
+	public PuzzleGame load() {
+		return this.source.loadPuzzle(this);
+	}
+
+	public int getId() {
+		return this.id;
+	}
+
+	public int getLevel() {
+		return this.level;
+	}
+
+	public long getOffset() {
+		return this.offset;
+	}
+
+	public int getMinMoves() {
+		return this.minMoves;
+	}
+}
@@ -0,0 +1,434 @@
+import java.util.Arrays;
+
+/**
+ * The part of a puzzle that never changes while it is being solved: the board size,
+ * the exit and the orientation, length and lane of every vehicle.
+ * Only the position of each vehicle along its lane changes, so a whole state can be
+ * packed into a single long with a few bits per vehicle, see CompactPuzzleState.
+ */
+public class PuzzleLayout {
+    //largest board whose cells fit in a long bitmask
+    private static final int MAX_CELLS = Long.SIZE;
+    private final PuzzleGame template;
+    private final int sizeRow;
+    private final int sizeCol;
+    private final int exitRow;
+    private final int exitCol;
+    //index of the main vehicle (id 0) in the arrays below
+    private final int mainIndex;
+    private final int[] ids;
+    private final boolean[] isVertical;
+    private final int[] length;
+    //the column of a vertical vehicle or the row of a horizontal vehicle
+    private final int[] lane;
+    private final int bitsPerVehicle;
+    private final long posMask;
+
+    /**
+     * Create the layout from the vehicles currently on the board.
+     * @pre canEncode(game)
+     * @post true
+     * @param game
+     */
+    public PuzzleLayout(PuzzleGame game) {
+        this.template = new PuzzleGame(game);
+        this.template.setId(game.getId());
+        this.sizeRow = game.getNumRows();
+        this.sizeCol = game.getNumCols();
+        this.exitRow = game.getExitRow();
+        this.exitCol = game.getExitCol();
+        int numVehicles = game.getVehicles().size();
+        this.ids = new int[numVehicles];
+        this.isVertical = new boolean[numVehicles];
+        this.length = new int[numVehicles];
+        this.lane = new int[numVehicles];
+        int mainIndex = -1;
+        int i = 0;
+        for (Vehicle v : game.getVehicles()) {
+            this.ids[i] = v.getID();
+            this.isVertical[i] = v.getIsVertical();
+            this.length[i] = v.getLength();
+            this.lane[i] = v.getIsVertical() ? v.getCol() : v.getRow();
+            if (v.getID() == 0) mainIndex = i;
+            i++;
+        }
+        this.mainIndex = mainIndex;
+        this.bitsPerVehicle = bitsPerVehicle(this.sizeRow, this.sizeCol);
+        this.posMask = (1L << this.bitsPerVehicle) - 1;
+    }
+
+    /**
+     * Check whether the puzzle is small enough to be packed into a long.
+     * @pre game != null
+     * @post true
+     * @param game
+     * @return true if every vehicle position and every cell of the board fit in a long
+     */
+    public static boolean canEncode(PuzzleGame game) {
+        if (game.getMainVehicle() == null) return false;
+        if (game.getNumRows() * game.getNumCols() > MAX_CELLS) return false;
+        int bits = bitsPerVehicle(game.getNumRows(), game.getNumCols());
+        return game.getVehicles().size() * bits <= Long.SIZE;
+    }
+
+    /**
+     * Positions are stored with an offset of one, since the main vehicle can stick out
+     * one cell past the exit. The largest stored value is therefore the board size.
+     */
+    private static int bitsPerVehicle(int sizeRow, int sizeCol) {
+        return Integer.SIZE - Integer.numberOfLeadingZeros(Math.max(sizeRow, sizeCol));
+    }
+
+    /**
+     * Pack the positions of the vehicles on the board into a key.
+     * @pre game has the same vehicles as the game this layout was created from
+     * @post true
+     * @param game
+     * @return the key of the current state of the game
+     */
+    public long encode(PuzzleGame game) {
+        long key = 0;
+        for (int i = 0; i < this.ids.length; i++) {
+            Vehicle v = game.getVehicle(this.ids[i]);
+            key = this.setPos(key, i, v.getIsVertical() ? v.getRow() : v.getCol());
+        }
+        return key;
+    }
+
+    /**
+     * @param key
+     * @param i, index of the vehicle
+     * @return the row of a vertical vehicle or the column of a horizontal vehicle
+     */
+    public int getPos(long key, int i) {
+        return (int) ((key >>> (i * this.bitsPerVehicle)) & this.posMask) - 1;
+    }
+
+    /**
+     * @param key
+     * @param i, index of the vehicle
+     * @param pos, new row of a vertical vehicle or column of a horizontal vehicle
+     * @return the key with the vehicle moved to pos
+     */
+    public long setPos(long key, int i, int pos) {
+        int shift = i * this.bitsPerVehicle;
+        return (key & ~(this.posMask << shift)) | ((long) (pos + 1) << shift);
+    }
+
+    /**
+     * Returns a bitmask with bit (row * width + col) set for every occupied cell.
+     * Cells of the main vehicle that are outside the board are ignored.
+     * @param key
+     * @return the occupied cells of the state
+     */
+    public long getOccupied(long key) {
+        long occupied = 0;
+        for (int i = 0; i < this.ids.length; i++) {
+            occupied |= this.getCells(key, i);
+        }
+        return occupied;
+    }
+
+    /**
+     * @param key
+     * @param i, index of the vehicle
+     * @return the bitmask of the cells of the vehicle, without the cells outside the board
+     */
+    public long getCells(long key, int i) {
+        return this.getLaneCells(i, this.getPos(key, i), this.getPos(key, i) + this.length[i] - 1);
+    }
+
+    /**
+     * @param i, index of the vehicle
+     * @param from, the first row of a vertical vehicle's column or column of a horizontal vehicle's row
+     * @param to, the last row or column
+     * @return the bitmask of the cells of the vehicle's lane from from to to, without the cells outside the board
+     */
+    public long getLaneCells(int i, int from, int to) {
+        long cells = 0;
+        for (int p = Math.max(0, from); p <= to; p++) {
+            if (this.isVertical[i]) {
+                if (p >= this.sizeRow) break;
+                cells |= 1L << (p * this.sizeCol + this.lane[i]);
+            } else {
+                if (p >= this.sizeCol) break;
+                cells |= 1L << (this.lane[i] * this.sizeCol + p);
+            }
+        }
+        return cells;
+    }
+
+    /**
+     * @return an upper bound on the number of successors of a state
+     */
+    public int getMaxSuccessors() {
+        return this.ids.length * (Math.max(this.sizeRow, this.sizeCol) + 1);
+    }
+
+    /**
+     * Writes the keys of every state one move away from key into successors.
+     * The moves and their order are the same as PuzzleGame.canMoveUp/Down/Left/Right
+     * applied to each vehicle in turn.
+     * @pre successors.length >= getMaxSuccessors()
+     * @post true
+     * @param key
+     * @param successors, array to write the keys to
+     * @return the number of successors written
+     */
+    public int getSuccessors(long key, long[] successors) {
+        long occupied = this.getOccupied(key);
+        int n = 0;
+        for (int i = 0; i < this.ids.length; i++) {
+            int pos = this.getPos(key, i);
+            int len = this.length[i];
+            int lane = this.lane[i];
+            if (this.isVertical[i]) {
+                int row = pos - 1;
+                while (row >= 0 && !isOccupied(occupied, row * this.sizeCol + lane)) {
+                    successors[n++] = this.setPos(key, i, row);
+                    row--;
+                }
+                if (this.exitRow == 0 && i == this.mainIndex && row == -1) {
+                    successors[n++] = this.setPos(key, i, row);
+                }
+                row = pos + len;
+                while (row >= 0 && row < this.sizeRow && !isOccupied(occupied, row * this.sizeCol + lane)) {
+                    successors[n++] = this.setPos(key, i, row - len + 1);
+                    row++;
+                }
+                if (this.exitRow == this.sizeRow - 1 && i == this.mainIndex && row == this.sizeRow) {
+                    successors[n++] = this.setPos(key, i, row - len + 1);
+                }
+            } else {
+                int col = pos - 1;
+                while (col >= 0 && !isOccupied(occupied, lane * this.sizeCol + col)) {
+                    successors[n++] = this.setPos(key, i, col);
+                    col--;
+                }
+                if (this.exitCol == 0 && i == this.mainIndex && col == -1) {
+                    successors[n++] = this.setPos(key, i, col);
+                }
+                col = pos + len;
+                while (col >= 0 && col < this.sizeCol && !isOccupied(occupied, lane * this.sizeCol + col)) {
+                    successors[n++] = this.setPos(key, i, col - len + 1);
+                    col++;
+                }
+                if (this.exitCol == this.sizeCol - 1 && i == this.mainIndex && col == this.sizeCol) {
+                    successors[n++] = this.setPos(key, i, col - len + 1);
+                }
+            }
+        }
+        return n;
+    }
+
+    private static boolean isOccupied(long occupied, int cell) {
+        return (occupied & (1L << cell)) != 0;
+    }
+
+    /**
+     * Returns the move that turns one state into the other.
+     * @pre to is one move away from from
+     * @post true
+     * @param from
+     * @param to
+     * @return the vehicle that moved and its new location, or null if the states are the same
+     */
+    public VehicleMove getMove(long from, long to) {
+        for (int i = 0; i < this.ids.length; i++) {
+            int pos = this.getPos(to, i);
+            if (this.getPos(from, i) != pos) {
+                int row = this.isVertical[i] ? pos : this.lane[i];
+                int col = this.isVertical[i] ? this.lane[i] : pos;
+                return new VehicleMove(this.ids[i], row, col);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Same as PuzzleGame.isSolved(), the main vehicle covers the exit.
+     * @param key
+     * @return true if the state is solved
+     */
+    public boolean isSolved(long key) {
+        int pos = this.getPos(key, this.mainIndex);
+        int len = this.length[this.mainIndex];
+        if (this.isVertical[this.mainIndex]) {
+            return this.lane[this.mainIndex] == this.exitCol && pos <= this.exitRow && this.exitRow < pos + len;
+        }
+        return this.lane[this.mainIndex] == this.exitRow && pos <= this.exitCol && this.exitCol < pos + len;
+    }
+
+    /**
+     * @return true if the main vehicle is in the same row or column as the exit
+     */
+    public boolean canReachExit() {
+        if (this.isVertical[this.mainIndex]) {
+            return this.lane[this.mainIndex] == this.exitCol;
+        }
+        return this.lane[this.mainIndex] == this.exitRow;
+    }
+
+    /**
+     * Returns a solved key based on the given key.
+     * @pre canReachExit()
+     * @post isSolved(getGoalKey(key))
+     * @param key
+     * @return the key with the main vehicle moved onto the exit
+     */
+    public long getGoalKey(long key) {
+        int pos = this.isVertical[this.mainIndex] ? this.exitRow : this.exitCol;
+        return this.setPos(key, this.mainIndex, pos);
+    }
+
+    /**
+     * Lists every solved state of the puzzle: the main vehicle covers the exit and the
+     * other vehicles are anywhere on the board without overlapping.
+     * Vehicles in the same lane can never pass each other, so only states that keep the
+     * order of each lane in key are listed, the others cannot be reached from key.
+     * @pre canReachExit()
+     * @post isSolved(key) for every returned key
+     * @param key, the state whose lane order the solved states keep
+     * @param maxKeys, the most keys to list
+     * @return the solved keys, or null if there are more than maxKeys
+     */
+    public long[] getSolvedKeys(long key, int maxKeys) {
+        long[] keys = new long[16];
+        int[] count = new int[1];
+        int size = this.isVertical[this.mainIndex] ? this.sizeRow : this.sizeCol;
+        int exit = this.isVertical[this.mainIndex] ? this.exitRow : this.exitCol;
+        int len = this.length[this.mainIndex];
+        // The main vehicle may stick out one cell past the exit
+        for (int pos = Math.max(-1, exit - len + 1); pos <= Math.min(exit, size - len + 1); pos++) {
+            if ((pos == -1 && exit != 0) || (pos + len > size && exit != size - 1)) continue;
+            long solved = this.setPos(0, this.mainIndex, pos);
+            keys = this.addSolvedKeys(key, solved, this.getCells(solved, this.mainIndex), 0, keys, count, maxKeys);
+            if (keys == null) return null;
+        }
+        return Arrays.copyOf(keys, count[0]);
+    }
+
+    /**
+     * Places the vehicles from index i on in every free position that keeps the lane order
+     * of order, adding each full placement to keys
+     * @return keys or a larger copy of it, null once count passes maxKeys
+     */
+    private long[] addSolvedKeys(long order, long key, long occupied, int i, long[] keys, int[] count, int maxKeys) {
+        if (i == this.mainIndex) i++;
+        if (i == this.ids.length) {
+            if (count[0] == maxKeys) return null;
+            if (count[0] == keys.length) keys = Arrays.copyOf(keys, keys.length * 2);
+            keys[count[0]++] = key;
+            return keys;
+        }
+        int size = this.isVertical[i] ? this.sizeRow : this.sizeCol;
+        for (int pos = 0; pos + this.length[i] <= size; pos++) {
+            long cells = this.getLaneCells(i, pos, pos + this.length[i] - 1);
+            if ((occupied & cells) != 0 || !this.keepsLaneOrder(order, key, i, pos)) continue;
+            keys = this.addSolvedKeys(order, this.setPos(key, i, pos), occupied | cells, i + 1, keys, count, maxKeys);
+            if (keys == null) return null;
+        }
+        return keys;
+    }
+
+    /**
+     * @param order, the state whose lane order is kept
+     * @param key, the state with the main vehicle and the vehicles before i placed
+     * @param i, index of the vehicle to place
+     * @param pos, the position to place it at
+     * @return true if every placed vehicle in the lane of i is on the same side of it as in order
+     */
+    private boolean keepsLaneOrder(long order, long key, int i, int pos) {
+        for (int j = 0; j < this.ids.length; j++) {
+            if (j == i || (j > i && j != this.mainIndex)) continue;
+            if (this.isVertical[j] != this.isVertical[i] || this.lane[j] != this.lane[i]) continue;
+            if ((this.getPos(order, j) < this.getPos(order, i)) != (this.getPos(key, j) < pos)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Build the board of the state, the same as PuzzleGame.getBoard() would return.
+     * @param key
+     * @return the board of the state
+     */
+    public int[][] toBoard(long key) {
+        int[][] board = new int[this.sizeRow][this.sizeCol];
+        for (int[] row : board) {
+            Arrays.fill(row, -1);
+        }
+        for (int i = 0; i < this.ids.length; i++) {
+            int pos = this.getPos(key, i);
+            for (int k = 0; k < this.length[i]; k++) {
+                int p = pos + k;
+                if (this.isVertical[i]) {
+                    if (p < 0 || p >= this.sizeRow) continue;
+                    board[p][this.lane[i]] = this.ids[i];
+                } else {
+                    if (p < 0 || p >= this.sizeCol) continue;
+                    board[this.lane[i]][p] = this.ids[i];
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Build a full puzzle game of the state, only needed once a path has been found.
+     * @param key
+     * @return a new PuzzleGame with the vehicles at the positions of the key
+     */
+    public PuzzleGame toPuzzleGame(long key) {
+        PuzzleGame game = new PuzzleGame(this.template);
+        game.setId(this.template.getId());
+        int[] rows = new int[this.ids.length];
+        int[] cols = new int[this.ids.length];
+        for (int i = 0; i < this.ids.length; i++) {
+            int pos = this.getPos(key, i);
+            rows[i] = this.isVertical[i] ? pos : this.lane[i];
+            cols[i] = this.isVertical[i] ? this.lane[i] : pos;
+        }
+        game.setVehiclePositions(this.ids, rows, cols);
+        return game;
+    }
+
+    public int getNumVehicles() {
+        return this.ids.length;
+    }
+
+    public int getMainIndex() {
+        return this.mainIndex;
+    }
+
+    public int getId(int i) {
+        return this.ids[i];
+    }
+
+    public boolean isVertical(int i) {
+        return this.isVertical[i];
+    }
+
+    public int getLength(int i) {
+        return this.length[i];
+    }
+
+    public int getLane(int i) {
+        return this.lane[i];
+    }
+
+    public int getNumRows() {
+        return this.sizeRow;
+    }
+
+    public int getNumCols() {
+        return this.sizeCol;
+    }
+
+    public int getExitRow() {
+        return this.exitRow;
+    }
+
+    public int getExitCol() {
+        return this.exitCol;
+    }
+}
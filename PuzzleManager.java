@@ -2,18 +2,46 @@ import java.util.List;
 import java.util.Map;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.HashMap;
 
+/**
+ * Keeps the puzzles of every level. All methods are synchronized so puzzles can be
+ * added by several generator threads while the game reads them.
+ * Puzzles added with addPuzzleHandle are only loaded when they are first asked for, and
+ * at most maxCached of them are kept loaded. Puzzles added as PuzzleGames are always kept.
+ */
 public class PuzzleManager {
+	public static final int DEFAULT_MAX_CACHED = 256;
 	private final int numPuzzleTypes;
-	Map<Integer,PuzzleGame>[] puzzles;
+	private Map<Integer,PuzzleGame>[] puzzles;
+	//puzzles that are loaded from their handle, their value in puzzles is null
+	private final List<Map<Integer,PuzzleHandle>> handles;
+	//the most recently used puzzles loaded from a handle
+	private final Map<PuzzleHandle,PuzzleGame> cache;
 	private int numPuzzles;
 
 	public PuzzleManager(int numPuzzleTypes) {
+		this(numPuzzleTypes, DEFAULT_MAX_CACHED);
+	}
+
+	/**
+	 * @param numPuzzleTypes, the number of levels
+	 * @param maxCached, the maximum number of puzzles loaded from handles that are kept
+	 */
+	public PuzzleManager(int numPuzzleTypes, int maxCached) {
 		this.numPuzzleTypes = numPuzzleTypes;
+		this.cache = new LinkedHashMap<PuzzleHandle,PuzzleGame>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PuzzleHandle,PuzzleGame> eldest) {
+				return this.size() > maxCached;
+			}
+		};
 		this.numPuzzles = 0;
 		puzzles = new LinkedHashMap[this.numPuzzleTypes];
+		handles = new ArrayList<>(this.numPuzzleTypes);
 		for(int i = 0; i < this.numPuzzleTypes; i++) {
 			puzzles[i] = new LinkedHashMap<>();
+			handles.add(new HashMap<>());
 		}
 	}
 
@@ -23,13 +51,43 @@ public class PuzzleManager {
 	 * @param typeIndex, which puzzle list to add to
 	 * @param puzzle
 	 */
-	public void addNewPuzzle(int typeIndex, PuzzleGame puzzle) {
+	public synchronized void addNewPuzzle(int typeIndex, PuzzleGame puzzle) {
 		int id = this.getUniquePuzzleId(typeIndex);
 		puzzle.setId(id);
 		this.puzzles[typeIndex].put(id, puzzle);
 		this.numPuzzles++;
 		return;
 	}
+
+	/**
+	 * Same as addNewPuzzle but only adds the puzzle if the level is not full yet.
+	 * The check and the add happen atomically so generator threads cannot overfill a level.
+	 * @pre typeIndex < numPuzzleTypes, typeIndex >= 0
+	 * @param typeIndex, which puzzle list to add to
+	 * @param puzzle
+	 * @param maxPuzzles, the maximum number of puzzles in the level
+	 * @return true if the puzzle was added
+	 */
+	public synchronized boolean addNewPuzzleIfRoom(int typeIndex, PuzzleGame puzzle, int maxPuzzles) {
+		if(this.puzzles[typeIndex].size() >= maxPuzzles) {
+			return false;
+		}
+		this.addNewPuzzle(typeIndex, puzzle);
+		return true;
+	}
+
+	/**
+	 * @param maxPuzzles, the maximum number of puzzles in a level
+	 * @return true if every level has at least maxPuzzles puzzles
+	 */
+	public synchronized boolean isFull(int maxPuzzles) {
+		for(int i = 0; i < this.numPuzzleTypes; i++) {
+			if(this.puzzles[i].size() < maxPuzzles) {
+				return false;
+			}
+		}
+		return true;
+	}
 	
 	/**
 	 * Uses the id of the given puzzle and adds it to the correct map
@@ -37,11 +95,41 @@ public class PuzzleManager {
 	 * @param typeIndex
 	 * @param puzzle
 	 */
-	public void addExistingPuzzle(int typeIndex, PuzzleGame puzzle) {
+	public synchronized void addExistingPuzzle(int typeIndex, PuzzleGame puzzle) {
 		this.puzzles[typeIndex].put(puzzle.getId(), puzzle);
+		PuzzleHandle handle = this.handles.get(typeIndex).remove(puzzle.getId());
+		if(handle != null) this.cache.remove(handle);
 		this.numPuzzles++;
 		return;
 	}
+
+	/**
+	 * Adds a puzzle without loading it, it is loaded from the handle when it is asked for
+	 * @pre handle.getLevel() < numPuzzleTypes, handle.getLevel() >= 0
+	 * @param handle
+	 */
+	public synchronized void addPuzzleHandle(PuzzleHandle handle) {
+		this.puzzles[handle.getLevel()].put(handle.getId(), null);
+		this.handles.get(handle.getLevel()).put(handle.getId(), handle);
+		this.numPuzzles++;
+		return;
+	}
+
+	/**
+	 * Returns the puzzle, loading it from its handle if it is not in the cache
+	 */
+	private PuzzleGame loadPuzzle(int typeIndex, int puzzleId) {
+		PuzzleGame puzzle = this.puzzles[typeIndex].get(puzzleId);
+		PuzzleHandle handle = this.handles.get(typeIndex).get(puzzleId);
+		if(puzzle == null && handle != null) {
+			puzzle = this.cache.get(handle);
+			if(puzzle == null) {
+				puzzle = handle.load();
+				if(puzzle != null) this.cache.put(handle, puzzle);
+			}
+		}
+		return puzzle;
+	}
 	
 	private int getUniquePuzzleId(int typeIndex) {
 		int id = 0;
@@ -51,8 +139,22 @@ public class PuzzleManager {
 		return id;
 	}
 
-	public List<PuzzleGame> getPuzzles(int typeIndex) {
-		return new ArrayList<>(this.puzzles[typeIndex].values());
+	/**
+	 * @pre typeIndex < numPuzzleTypes, typeIndex >= 0
+	 * @param typeIndex
+	 * @return the ids of the puzzles of the level, without loading them
+	 */
+	public synchronized List<Integer> getPuzzleIds(int typeIndex) {
+		return new ArrayList<>(this.puzzles[typeIndex].keySet());
+	}
+
+	public synchronized List<PuzzleGame> getPuzzles(int typeIndex) {
+		List<PuzzleGame> list = new ArrayList<>();
+		for(int puzzleId : new ArrayList<>(this.puzzles[typeIndex].keySet())) {
+			PuzzleGame puzzle = this.loadPuzzle(typeIndex, puzzleId);
+			if(puzzle != null) list.add(puzzle);
+		}
+		return list;
 	}
 	
 	/**
@@ -61,14 +163,14 @@ public class PuzzleManager {
 	 * @param puzzleId
 	 * @return the puzzle with the puzzleId or null of puzzleId does not exist
 	 */
-	public PuzzleGame getPuzzle(int typeIndex, int puzzleId) {
+	public synchronized PuzzleGame getPuzzle(int typeIndex, int puzzleId) {
 		if(this.puzzles[typeIndex].containsKey(puzzleId)) {
-			return this.puzzles[typeIndex].get(puzzleId);
+			return this.loadPuzzle(typeIndex, puzzleId);
 		}
 		return null;
 	}
 	
-	public int getNumPuzzles(int typeIndex) {
+	public synchronized int getNumPuzzles(int typeIndex) {
 		return this.puzzles[typeIndex].size();
 	}
 	
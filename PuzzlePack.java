@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Many puzzles in a single memory mapped file.
+ *
+ * The file starts with a header:
+ *   int magic, byte version, int recordSize, int numLevels,
+ *   then for every level short nameLength, the UTF-8 name, int firstRecord, int numPuzzles.
+ * The records follow the header. Every record has the same size, a CompactPuzzleFormat
+ * puzzle padded with zeros, so a puzzle is found from its index without reading the others
+ * and is only decoded when it is asked for.
+ */
+public class PuzzlePack implements PuzzleSource {
+	//"GLPK"
+	public static final int MAGIC = 0x474C504B;
+	public static final byte VERSION = 1;
+	public static final String EXTENSION = ".gpk";
+	//the mapped file, or a copy of it on the heap once released
+	private volatile ByteBuffer buffer;
+	private final int recordSize;
+	private final int dataOffset;
+	private final String[] levelNames;
+	private final int[] firstRecord;
+	private final int[] numPuzzles;
+
+	private PuzzlePack(ByteBuffer buffer) throws IOException {
+		this.buffer = buffer;
+		if (buffer.remaining() < 3 * Integer.BYTES + Byte.BYTES || buffer.getInt() != MAGIC) {
+			throw new IOException("Not a puzzle pack");
+		}
+		byte version = buffer.get();
+		if (version != VERSION) {
+			throw new IOException("Unsupported puzzle pack version " + version);
+		}
+		this.recordSize = buffer.getInt();
+		int numLevels = buffer.getInt();
+		this.levelNames = new String[numLevels];
+		this.firstRecord = new int[numLevels];
+		this.numPuzzles = new int[numLevels];
+		for (int i = 0; i < numLevels; i++) {
+			byte[] name = new byte[buffer.getShort()];
+			buffer.get(name);
+			this.levelNames[i] = new String(name, StandardCharsets.UTF_8);
+			this.firstRecord[i] = buffer.getInt();
+			this.numPuzzles[i] = buffer.getInt();
+		}
+		this.dataOffset = buffer.position();
+		long records = (long) (buffer.limit() - this.dataOffset) / Math.max(1, this.recordSize);
+		for (int i = 0; i < numLevels; i++) {
+			if (this.firstRecord[i] < 0 || this.numPuzzles[i] < 0 || this.firstRecord[i] + (long) this.numPuzzles[i] > records) {
+				throw new IOException("Puzzle pack is cut short");
+			}
+		}
+	}
+
+	/**
+	 * Map the pack file into memory, only the header is read.
+	 * @pre path != null
+	 * @post true
+	 * @param path
+	 * @return the pack
+	 * @throws IOException if the file cannot be read or is not a puzzle pack
+	 */
+	public static PuzzlePack open(String path) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			//the mapping stays valid after the channel is closed
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new PuzzlePack(mapped);
+		}
+	}
+
+	/**
+	 * Write a pack with the given levels. The file is replaced in one step, so a pack
+	 * that is open keeps working with the old contents.
+	 * @pre levelNames.size() == levels.size()
+	 * @post true
+	 * @param path
+	 * @param levelNames
+	 * @param levels, the puzzles of every level
+	 * @throws IOException if the file cannot be written
+	 */
+	public static void write(String path, List<String> levelNames, List<List<PuzzleGame>> levels) throws IOException {
+		int maxVehicles = 0;
+		int numRecords = 0;
+		int headerSize = 3 * Integer.BYTES + Byte.BYTES;
+		List<byte[]> names = new ArrayList<>();
+		for (int i = 0; i < levels.size(); i++) {
+			byte[] name = levelNames.get(i).getBytes(StandardCharsets.UTF_8);
+			names.add(name);
+			headerSize += Short.BYTES + name.length + 2 * Integer.BYTES;
+			for (PuzzleGame puzzle : levels.get(i)) {
+				maxVehicles = Math.max(maxVehicles, puzzle.getVehicles().size());
+			}
+			numRecords += levels.get(i).size();
+		}
+		int recordSize = CompactPuzzleFormat.getRecordSize(maxVehicles);
+		ByteBuffer out = ByteBuffer.allocate(headerSize + numRecords * recordSize);
+		out.putInt(MAGIC);
+		out.put(VERSION);
+		out.putInt(recordSize);
+		out.putInt(levels.size());
+		int first = 0;
+		for (int i = 0; i < levels.size(); i++) {
+			out.putShort((short) names.get(i).length);
+			out.put(names.get(i));
+			out.putInt(first);
+			out.putInt(levels.get(i).size());
+			first += levels.get(i).size();
+		}
+		for (List<PuzzleGame> level : levels) {
+			for (PuzzleGame puzzle : level) {
+				int start = out.position();
+				CompactPuzzleFormat.writePuzzle(puzzle, out);
+				out.position(start + recordSize);
+			}
+		}
+		Path target = Paths.get(path);
+		Path temp = Paths.get(path + ".tmp");
+		Files.write(temp, out.array());
+		try {
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (FileSystemException e) {
+			//on Windows a mapped file cannot be replaced, a released pack is only unmapped once it is collected
+			System.gc();
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+	}
+
+	/**
+	 * Copies the pack to the heap and drops the mapping, so the file can be replaced while the
+	 * pack and its handles are still in use. The mapping is unmapped once it is collected.
+	 * @pre true
+	 * @post the pack no longer reads from the file
+	 */
+	public synchronized void release() {
+		if (!this.buffer.isDirect()) return;
+		ByteBuffer mapped = this.buffer.duplicate();
+		mapped.clear();
+		ByteBuffer copy = ByteBuffer.allocate(mapped.capacity());
+		copy.put(mapped);
+		copy.flip();
+		this.buffer = copy;
+	}
+
+	public int getNumLevels() {
+		return this.levelNames.length;
+	}
+
+	public String getLevelName(int level) {
+		return this.levelNames[level];
+	}
+
+	/**
+	 * @param name
+	 * @return the index of the level with the name, -1 if the pack does not have it
+	 */
+	public int getLevelIndex(String name) {
+		for (int i = 0; i < this.levelNames.length; i++) {
+			if (this.levelNames[i].equals(name)) return i;
+		}
+		return -1;
+	}
+
+	public int getNumPuzzles(int level) {
+		return this.numPuzzles[level];
+	}
+
+	/**
+	 * @pre 0 <= index < getNumPuzzles(level)
+	 * @param level
+	 * @param index
+	 * @return the position of the record of the puzzle in the file
+	 */
+	public int getOffset(int level, int index) {
+		return this.dataOffset + (this.firstRecord[level] + index) * this.recordSize;
+	}
+
+	/**
+	 * Reads the id without decoding the puzzle
+	 * @pre 0 <= index < getNumPuzzles(level)
+	 */
+	public int getId(int level, int index) {
+		return CompactPuzzleFormat.getId(this.buffer, this.getOffset(level, index));
+	}
+
+	/**
+	 * Reads the minimum number of moves without decoding the puzzle
+	 * @pre 0 <= index < getNumPuzzles(level)
+	 */
+	public int getMinMoves(int level, int index) {
+		return CompactPuzzleFormat.getMinMoves(this.buffer, this.getOffset(level, index));
+	}
+
+	/**
+	 * Decode the puzzle of a record, safe to call from several threads.
+	 * @param offset, as returned by getOffset()
+	 * @return a new puzzle in its initial state
+	 * @throws IOException if the record is damaged
+	 */
+	public PuzzleGame getPuzzle(int offset) throws IOException {
+		ByteBuffer record = this.buffer.duplicate();
+		record.position(offset);
+		record.limit(offset + this.recordSize);
+		return CompactPuzzleFormat.readPuzzle(record);
+	}
+
+	/**
+	 * @param level, the level of the pack
+	 * @param index
+	 * @param typeIndex, the level of the puzzle manager the puzzle will belong to
+	 * @return a handle of the puzzle, only the id and minimum number of moves are read
+	 */
+	public PuzzleHandle getHandle(int level, int index, int typeIndex) {
+		return new PuzzleHandle(this.getId(level, index), typeIndex, this.getOffset(level, index), this.getMinMoves(level, index), this);
+	}
+
+	@Override
+	public PuzzleGame loadPuzzle(PuzzleHandle handle) {
+		try {
+			return this.getPuzzle((int) handle.getOffset());
+		} catch (IOException e) {
+			System.out.println("Error reading puzzle pack: " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * @pre 0 <= index < getNumPuzzles(level)
+	 */
+	public PuzzleGame getPuzzle(int level, int index) throws IOException {
+		return this.getPuzzle(this.getOffset(level, index));
+	}
+
+	/**
+	 * Decode every puzzle of the level
+	 */
+	public List<PuzzleGame> getPuzzles(int level) throws IOException {
+		List<PuzzleGame> puzzles = new ArrayList<>(this.numPuzzles[level]);
+		for (int i = 0; i < this.numPuzzles[level]; i++) {
+			puzzles.add(this.getPuzzle(level, i));
+		}
+		return puzzles;
+	}
+}
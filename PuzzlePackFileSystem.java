@@ -0,0 +1,149 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the puzzles of every level in one PuzzlePack file instead of one file per puzzle.
+ * A folder path names a level of the pack by its last part, so "src/puzzles/easy" is
+ * the level "easy". The pack is mapped once and addPuzzlesFromFolder only adds handles,
+ * a puzzle is decoded when PuzzleManager.getPuzzle asks for it.
+ */
+public class PuzzlePackFileSystem implements FileSystem {
+	private final String packPath;
+	private PuzzlePack pack;
+
+	/**
+	 * @param packPath, the pack file to load from and save to
+	 */
+	public PuzzlePackFileSystem(String packPath) {
+		this.packPath = packPath;
+	}
+
+	/**
+	 * Replaces the level of the folder in the pack with the puzzles, the other levels are kept.
+	 */
+	@Override
+	public void savePuzzlesToFolder(List<PuzzleGame> puzzles, String folderPath) {
+		this.savePuzzlesToFolders(List.of(puzzles), List.of(folderPath));
+	}
+
+	/**
+	 * Replaces the levels of the folders in the pack with the puzzles and writes the pack once,
+	 * only the other levels are read from the old pack.
+	 */
+	@Override
+	public synchronized void savePuzzlesToFolders(List<List<PuzzleGame>> newLevels, List<String> folderPaths) {
+		Map<String, List<PuzzleGame>> byName = new LinkedHashMap<>();
+		for(int i = 0; i < newLevels.size(); i++) {
+			byName.put(new File(folderPaths.get(i)).getName(), newLevels.get(i));
+		}
+		List<String> levelNames = new ArrayList<>();
+		List<List<PuzzleGame>> levels = new ArrayList<>();
+		try {
+			PuzzlePack old = this.getPack();
+			for(int i = 0; old != null && i < old.getNumLevels(); i++) {
+				String name = old.getLevelName(i);
+				levelNames.add(name);
+				levels.add(byName.containsKey(name) ? byName.remove(name) : old.getPuzzles(i));
+			}
+			for(Map.Entry<String, List<PuzzleGame>> level : byName.entrySet()) {
+				levelNames.add(level.getKey());
+				levels.add(level.getValue());
+			}
+			//handles of the old pack keep working, but the file must not be mapped when it is replaced
+			if(old != null) old.release();
+			PuzzlePack.write(this.packPath, levelNames, levels);
+			this.pack = PuzzlePack.open(this.packPath);
+		} catch (IOException e) {
+			System.out.println("Error writing " + this.packPath + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Saves the puzzle on its own in a pack file, the .gpk extension is added to the filename.
+	 */
+	@Override
+	public void savePuzzleGame(PuzzleGame puzzle, String filename) {
+		List<List<PuzzleGame>> levels = new ArrayList<>();
+		levels.add(List.of(puzzle));
+		try {
+			PuzzlePack.write(filename + PuzzlePack.EXTENSION, List.of(new File(filename).getName()), levels);
+		} catch (IOException e) {
+			System.out.println("Error writing " + filename + PuzzlePack.EXTENSION);
+		}
+	}
+
+	@Override
+	public synchronized List<PuzzleGame> loadPuzzlesFromFolder(String folderPath) {
+		int level = this.getLevelIndex(folderPath);
+		if(level == -1) return null;
+		try {
+			return this.pack.getPuzzles(level);
+		} catch (IOException e) {
+			System.out.println("Error reading " + this.packPath + ": " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Loads the first puzzle of a pack file, the filename includes the extension.
+	 */
+	@Override
+	public PuzzleGame loadPuzzleGame(String filename) {
+		try {
+			PuzzlePack single = PuzzlePack.open(filename);
+			if(single.getNumLevels() > 0 && single.getNumPuzzles(0) > 0) {
+				return single.getPuzzle(0, 0);
+			}
+			System.out.println(filename + " has no puzzles");
+		} catch (IOException e) {
+			System.out.println("Error reading " + filename + ": " + e.getMessage());
+		}
+		return null;
+	}
+
+	/**
+	 * Only the ids are read, each puzzle is decoded from the pack the first time it is asked for.
+	 */
+	@Override
+	public synchronized void addPuzzlesFromFolder(PuzzleManager puzzleManager, int typeIndex, String folderPath) {
+		int level = this.getLevelIndex(folderPath);
+		if(level == -1) return;
+		for(int i = 0; i < this.pack.getNumPuzzles(level); i++) {
+			puzzleManager.addPuzzleHandle(this.pack.getHandle(level, i, typeIndex));
+		}
+	}
+
+	/**
+	 * @return the index in the pack of the level named by the folder, -1 if there is none
+	 */
+	private int getLevelIndex(String folderPath) {
+		try {
+			PuzzlePack current = this.getPack();
+			if(current == null) {
+				System.out.println("Cannot access " + this.packPath);
+				return -1;
+			}
+			int level = current.getLevelIndex(new File(folderPath).getName());
+			if(level == -1) System.out.println(this.packPath + " has no level " + folderPath);
+			return level;
+		} catch (IOException e) {
+			System.out.println("Error reading " + this.packPath + ": " + e.getMessage());
+		}
+		return -1;
+	}
+
+	/**
+	 * Maps the pack on first use
+	 * @return the pack or null if the file does not exist yet
+	 */
+	private PuzzlePack getPack() throws IOException {
+		if(this.pack == null && new File(this.packPath).exists()) {
+			this.pack = PuzzlePack.open(this.packPath);
+		}
+		return this.pack;
+	}
+}
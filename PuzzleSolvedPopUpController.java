@@ -25,6 +25,13 @@ public class PuzzleSolvedPopUpController extends MouseAdapter {
 	
 	@Override 
 	public void mouseReleased(MouseEvent e) {
+		this.showIfSolved();
+	}
+
+	/**
+	 * Shows the pop up if the puzzle is solved, for moves not made with the mouse such as a hint
+	 */
+	public void showIfSolved() {
 		if(this.puzzleGame.isSolved()) {
 			System.out.println("Puzzle solved!");
 			this.view = new PuzzleSolvedPopUpScreen(puzzleGame);
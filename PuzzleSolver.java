@@ -3,10 +3,81 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class PuzzleSolver {
+    /**
+     * The heuristics solve() can search with when there is no explored state space to use
+     */
+    public enum HeuristicType {
+        //counts the vehicles between the main vehicle and the exit, PuzzleHeuristic
+        BLOCKERS,
+        //also counts the vehicles in the way of those, BlockingChainHeuristic
+        BLOCKING_CHAIN,
+        //the largest of BLOCKING_CHAIN and the PatternDatabase.DEFAULT_FILE distances, PatternDatabaseHeuristic,
+        //only boards with the vehicles of a pattern of the saved puzzles use its table
+        PATTERN_DATABASE
+    }
+
+    //AStar on the saved ultraHard puzzles, as HeuristicReport measures it: no heuristic 35966 states in 32ms,
+    //BLOCKERS 28693 in 27ms, BLOCKING_CHAIN 26233 in 28ms, PATTERN_DATABASE 26183 in 36ms. Only BLOCKERS beats the
+    //blind search on every level, the others expand fewer states but cost more per state
+    public static final HeuristicType DEFAULT_HEURISTIC = HeuristicType.BLOCKERS;
+    //IDAStar expands the same states many times over, so expanding fewer of them pays off
+    public static final HeuristicType BOUNDED_MEMORY_HEURISTIC = HeuristicType.BLOCKING_CHAIN;
+    //expansions after which solveBoundedMemory(game) gives up
+    public static final int DEFAULT_MAX_EXPANDED = 5000000;
+
     public static List<int[][]> solve(PuzzleGame game) {
-        Heuristic<PuzzleState> h = new PuzzleHeuristic();
+        return solve(game, DEFAULT_HEURISTIC);
+    }
+
+    /**
+     * @param game, the puzzle to solve
+     * @param type, the heuristic to search with, every type gives a shortest solution
+     * @return the boards of a shortest solution or null if it cannot be solved, or the
+     * thread was interrupted while solving
+     */
+    public static List<int[][]> solve(PuzzleGame game, HeuristicType type) {
+        return solve(game, type, 0);
+    }
+
+    /**
+     * Same as solve(game), but searches with IDAStar and BOUNDED_MEMORY_HEURISTIC so the memory used stays the same however
+     * large the board is, for boards like the merged puzzles where AStar's closed set grows too big.
+     * Some states are expanded more than once, so it is slower on boards that fit in memory.
+     * Gives up after DEFAULT_MAX_EXPANDED expansions.
+     * @param game, the puzzle to solve
+     * @return the boards of a shortest solution or null if it cannot be solved, or the
+     * thread was interrupted while solving
+     */
+    public static List<int[][]> solveBoundedMemory(PuzzleGame game) {
+        return solveBoundedMemory(game, DEFAULT_MAX_EXPANDED);
+    }
+
+    /**
+     * Same as solveBoundedMemory(game). IDAStar does not remember every state, so it cannot tell
+     * that it has run out of states on a puzzle that cannot be solved, it gives up after
+     * maxExpanded expansions instead. Puzzles whose main vehicle can never reach the exit
+     * are rejected before searching.
+     * @pre maxExpanded > 0
+     * @param game, the puzzle to solve
+     * @param maxExpanded, the most states to expand
+     * @return the boards of a shortest solution, or null if it cannot be solved, no
+     * solution was found within maxExpanded expansions, or the thread was interrupted
+     */
+    public static List<int[][]> solveBoundedMemory(PuzzleGame game, int maxExpanded) {
+        if (!canReachExit(game)) return null;
+        return solve(game, BOUNDED_MEMORY_HEURISTIC, maxExpanded);
+    }
+
+    /**
+     * @param maxExpanded, the most expansions of IDAStar, 0 to search with AStar instead
+     */
+    private static List<int[][]> solve(PuzzleGame game, HeuristicType type, int maxExpanded) {
+        if (PuzzleLayout.canEncode(game)) {
+            return solveCompact(game, new PuzzleLayout(game), getCompactHeuristic(type), maxExpanded);
+        }
+        Heuristic<PuzzleState> h = type == HeuristicType.BLOCKERS ? new PuzzleHeuristic() : new BlockingChainHeuristic();
         Graph<PuzzleState> stateGraph = new TreeGraph<>();
-        ShortestPathSearch<PuzzleState> search = new AStar<>(stateGraph, h);
+        ShortestPathSearch<PuzzleState> search = newSearch(stateGraph, h, maxExpanded);
         PuzzleGame goal = new PuzzleGame(game.getNumRows(), game.getNumCols(), game.getExitRow(), game.getExitCol());
         goal.addVehicle(false, 2, game.getExitRow(), game.getExitCol(), Color.RED);
         List<PuzzleState> states = search.shortestPath(new PuzzleState(game), new PuzzleState(goal));
@@ -17,4 +88,139 @@ public class PuzzleSolver {
         }
         return path;
     }
+
+    /**
+     * The main vehicle can only leave along its own lane, and a vehicle parallel to it in that
+     * lane can never get out of the way.
+     * @param game
+     * @return false if the main vehicle is not in the lane of the exit or such a vehicle is
+     * between it and the exit
+     */
+    private static boolean canReachExit(PuzzleGame game) {
+        Vehicle main = game.getMainVehicle();
+        if (main == null) return false;
+        boolean vertical = main.getIsVertical();
+        int lane = vertical ? main.getCol() : main.getRow();
+        if (lane != (vertical ? game.getExitCol() : game.getExitRow())) return false;
+        int pos = vertical ? main.getRow() : main.getCol();
+        int exit = vertical ? game.getExitRow() : game.getExitCol();
+        for (Vehicle v : game.getVehicles()) {
+            if (v == main || v.getIsVertical() != vertical || (vertical ? v.getCol() : v.getRow()) != lane) continue;
+            int vPos = vertical ? v.getRow() : v.getCol();
+            if (exit > pos ? vPos > pos : vPos < pos) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns every cell that a vehicle occupies or slides through in the solution.
+     * A vehicle added outside these cells leaves the solution valid, so it cannot
+     * make the puzzle harder.
+     * @pre solution != null
+     * @post true
+     * @param solution, the boards of a solution as returned by solve()
+     * @return the cells used by the solution
+     */
+    public static boolean[][] getSweptCells(List<int[][]> solution) {
+        int[][] first = solution.get(0);
+        boolean[][] swept = new boolean[first.length][first[0].length];
+        int[][] prev = null;
+        for (int[][] board : solution) {
+            for (int row = 0; row < board.length; row++) {
+                for (int col = 0; col < board[row].length; col++) {
+                    if (board[row][col] != -1) swept[row][col] = true;
+                }
+            }
+            if (prev != null) {
+                sweepMove(prev, board, swept);
+            }
+            prev = board;
+        }
+        return swept;
+    }
+
+    /**
+     * Marks the cells between the old and new location of the vehicle that moved
+     */
+    private static void sweepMove(int[][] from, int[][] to, boolean[][] swept) {
+        int moved = -1;
+        for (int row = 0; row < from.length && moved == -1; row++) {
+            for (int col = 0; col < from[row].length && moved == -1; col++) {
+                if (from[row][col] != to[row][col]) {
+                    moved = to[row][col] != -1 ? to[row][col] : from[row][col];
+                }
+            }
+        }
+        if (moved == -1) return;
+        int minRow = Integer.MAX_VALUE, maxRow = -1, minCol = Integer.MAX_VALUE, maxCol = -1;
+        for (int row = 0; row < from.length; row++) {
+            for (int col = 0; col < from[row].length; col++) {
+                if (from[row][col] == moved || to[row][col] == moved) {
+                    minRow = Math.min(minRow, row);
+                    maxRow = Math.max(maxRow, row);
+                    minCol = Math.min(minCol, col);
+                    maxCol = Math.max(maxCol, col);
+                }
+            }
+        }
+        for (int row = minRow; row <= maxRow; row++) {
+            for (int col = minCol; col <= maxCol; col++) {
+                swept[row][col] = true;
+            }
+        }
+    }
+
+    /**
+     * @param v
+     * @param cells
+     * @return true if the vehicle covers any of the cells
+     */
+    public static boolean isOnCells(Vehicle v, boolean[][] cells) {
+        for (int i = 0; i < v.getLength(); i++) {
+            int row = v.getIsVertical() ? v.getRow() + i : v.getRow();
+            int col = v.getIsVertical() ? v.getCol() : v.getCol() + i;
+            if (row < cells.length && col < cells[row].length && cells[row][col]) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param type
+     * @return the heuristic of the type for packed states
+     */
+    public static Heuristic<CompactPuzzleState> getCompactHeuristic(HeuristicType type) {
+        if (type == HeuristicType.BLOCKERS) {
+            return new CompactPuzzleHeuristic();
+        }
+        if (type == HeuristicType.PATTERN_DATABASE) {
+            return new PatternDatabaseHeuristic(PatternDatabase.getDefault());
+        }
+        return new CompactBlockingChainHeuristic();
+    }
+
+    /**
+     * Searches over packed states and only builds the boards of the returned path.
+     * Used for every board small enough for PuzzleLayout.
+     */
+    private static List<int[][]> solveCompact(PuzzleGame game, PuzzleLayout layout, Heuristic<CompactPuzzleState> h, int maxExpanded) {
+        if (!layout.canReachExit()) return null;
+        Graph<CompactPuzzleState> stateGraph = new TreeGraph<>();
+        ShortestPathSearch<CompactPuzzleState> search = newSearch(stateGraph, h, maxExpanded);
+        long start = layout.encode(game);
+        CompactPuzzleState goal = new CompactPuzzleState(layout, layout.getGoalKey(start));
+        List<CompactPuzzleState> states = search.shortestPath(new CompactPuzzleState(layout, start), goal);
+        if (states == null) return null;
+        List<int[][]> path = new ArrayList<>();
+        for (CompactPuzzleState state : states) {
+            path.add(state.getBoard());
+        }
+        return path;
+    }
+
+    /**
+     * @return IDAStar giving up after maxExpanded expansions, or AStar if maxExpanded is 0
+     */
+    private static <N> ShortestPathSearch<N> newSearch(Graph<N> graph, Heuristic<N> h, int maxExpanded) {
+        return maxExpanded > 0 ? new IDAStar<>(graph, h, 0, maxExpanded) : new AStar<>(graph, h);
+    }
 }
@@ -0,0 +1,14 @@
+/**
+ * Somewhere puzzles can be loaded from one at a time, see PuzzleHandle.
+ */
+public interface PuzzleSource {
+
+	/**
+	 * Load the full puzzle of the handle.
+	 * @pre handle was created by this source
+	 * @post true
+	 * @param handle
+	 * @return a new puzzle in its initial state, null if it cannot be loaded
+	 */
+	public PuzzleGame loadPuzzle(PuzzleHandle handle);
+}
@@ -1,6 +1,8 @@
 
+import java.io.BufferedReader;
 import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.PrintStream;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -9,127 +11,96 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
 
 public class RushHourServer {
 	private static ServerSocket ss;
 	private static int port;
-	private static BlockingQueue<String> eventQueue;
+	private static BlockingQueue<ServerEvent> eventQueue;
 	private static Map<String,ClientInfo> clients;
-	private static Map<String, Socket> userList;
-	private static RushHourServerEV evHandler;
+	private static Map<String, ClientConnection> userList;
+	private static ShardedEventHandler evHandler;
+	//runs the handshake and handler of every connection, null to start a thread per connection
+	private final ExecutorService connectionExecutor;
+	//names claimed by a handshake that is still writing its reply, not in userList yet
+	private final Set<String> loggingIn = ConcurrentHashMap.newKeySet();
 	
+	/**
+	 * Starts the server on port 55555.
+	 * With --nio the clients are served by a few selector threads instead of a thread each.
+	 * With --virtual every connection runs on a virtual thread, see ConnectionExecutors.
+	 */
 	public static void main(String[] args) {
+		if(args.length > 0 && args[0].equals("--nio")) {
+			RushHourServerNIO server = new RushHourServerNIO(55555, RushHourServerNIO.DEFAULT_NUM_LOOPS);
+			server.run();
+			return;
+		}
+		if(args.length > 0 && args[0].equals("--virtual")) {
+			RushHourServer server = new RushHourServer(55555, ConnectionExecutors.newPerConnectionExecutor());
+			server.run();
+			return;
+		}
 		RushHourServer server = new RushHourServer(55555);
 		server.run();
 	}
 
 	public RushHourServer(int port) {
+		this(port, null);
+	}
+
+	/**
+	 * @param port
+	 * @param connectionExecutor, runs the handshake and handler of every connection,
+	 * null to do the handshake on the accept thread and start a thread per connection
+	 */
+	public RushHourServer(int port, ExecutorService connectionExecutor) {
 		this.port = port;
-		this.userList = new ConcurrentHashMap<String, Socket>();
+		this.connectionExecutor = connectionExecutor;
+		this.userList = new ConcurrentHashMap<String, ClientConnection>();
 		this.clients = new ConcurrentHashMap<String, ClientInfo>();
-		this.eventQueue = new LinkedBlockingQueue<String>();
+		this.eventQueue = new LinkedBlockingQueue<ServerEvent>();
 	}
 
 	// In charge of handling new connections and creating threads
 	public void run() {
-		String line;
-		String username;
-
 		try {
 			System.out.println("Starting server on port " + port);
 			ss = new ServerSocket(port);
 
-			// Start Event Handler Thread
-			// RushHourServerEV(BlockingQueue eventQueue,  Map<String,ClientInfo> clients, Map<String, Socket> userList)
-			evHandler = new RushHourServerEV(eventQueue, clients, userList);
+			// Load the puzzles once, every match picks from them
+			PuzzleCatalog catalog = PuzzleCatalog.load();
+			System.out.println("Loaded " + catalog.getNumPuzzles() + " puzzles");
+
+			// Start Event Handler Threads
+			// ShardedEventHandler(BlockingQueue<ServerEvent> eventQueue,  Map<String,ClientInfo> clients, Map<String, ClientConnection> userList, PuzzleCatalog catalog, int numShards)
+			evHandler = new ShardedEventHandler(eventQueue, clients, userList, catalog, ShardedEventHandler.DEFAULT_NUM_SHARDS);
 			evHandler.start();
+			startReloadListener();
 
 
 			while(true) {
 
 				// When a new connection established, handle it
 				Socket newClient = ss.accept();
-				DataInputStream is = new DataInputStream(newClient.getInputStream());
-				PrintStream os = new PrintStream(newClient.getOutputStream());
-				
-				// Get handshake message to identify user
-				// first message will be new username in format
 				System.out.println("New connection established" + newClient);
-				// command should be user "username", the first word is chosen, rest is ignored
-				System.out.println("Getting username from user");
-
-				// Test code for now
-				while(true){
-					try {
-						line = is.readLine();
-						if (line == null){
-							break;
-						}
-						System.out.println("From Host:" + line);
-						String[] parts = (line.trim()).split(" ");
-
-						// Checking for duplicate usernames
-						if (parts[0].toLowerCase().equals("user")){
-							username = parts[1].toLowerCase();
-
-							// Check if username exists and is online
-							if (clients.containsKey(username)){
-
-								// Other user online is currently using the name, pick another name
-								if(userList.containsKey(username)){
-									os.println("usertaken Username is currently online, please log out before logging in");
-									os.flush();
-									continue;
-								}
-								// Username is free, can be used
-								else{
-									System.out.println(username + " has been online before");
-									os.println("Online before");
-									os.flush();
-									userList.put(username,newClient); // Add mapping username to online socket
-									ClientInfo existingUser = clients.get(username);
-									existingUser.setOnline(true);
-									ConnectionHandler newConn = new ConnectionHandler(existingUser, eventQueue, newClient);
-									existingUser.setOnline(true);
-									newConn.start();
-									break;
-								}
-
-							}
-							else{
-								userList.put(username,newClient);
-								// Start new ConnectionHandler object
-								ClientInfo newInfo = new ClientInfo(username);
-								clients.put(username, newInfo);
-								ConnectionHandler newConn = new ConnectionHandler(newInfo, eventQueue, newClient);
-								os.println("login success \n");
-								os.flush();
-
-								// Should limit how many threads, need one for each active connection right now!
-								System.out.println("Thread created and started for " + username);
-								newConn.start();
-								break;
-							}
-
+				if(connectionExecutor != null) {
+					// The handshake and the handler both run on the executor, the accept loop only accepts
+					connectionExecutor.execute(() -> {
+						ConnectionHandler newConn = handshake(newClient);
+						if(newConn != null) {
+							System.out.println("Handler started for " + newClient);
+							newConn.run();
 						}
-						else{
-							// Invalid first message
-							os.println("Invalid command: user <username> required, connection is closed");
-							os.flush();
-							newClient.close();
-						}
-
-					} catch (IOException e1) {
-						// Connection probably broke?
-						e1.printStackTrace();
-						System.out.println("Connection broke");
-						break;
-					}
-
+					});
+					continue;
+				}
+				ConnectionHandler newConn = handshake(newClient);
+				if(newConn != null) {
+					newConn.start();
 				}
-
 
 
 ////				String line = is.readLine();
@@ -150,4 +121,135 @@ public class RushHourServer {
 		}
 	}
 
+	/**
+	 * Reads the username of a new connection.
+	 * @param newClient
+	 * @return the handler of the logged in client, not started yet, or null if the client left
+	 */
+	private ConnectionHandler handshake(Socket newClient) {
+		String line;
+		String username;
+		DataInputStream is;
+		PrintStream os;
+		try {
+			is = new DataInputStream(newClient.getInputStream());
+			os = new PrintStream(newClient.getOutputStream());
+		} catch (IOException e) {
+			System.out.println("Connection broke");
+			return null;
+		}
+
+		// Get handshake message to identify user
+		// first message will be new username in format
+		// command should be user "username", the first word is chosen, rest is ignored
+		System.out.println("Getting username from user");
+
+		// Test code for now
+		while(true){
+			try {
+				line = is.readLine();
+				if (line == null){
+					return null;
+				}
+				System.out.println("From Host:" + line);
+				String[] parts = (line.trim()).split(" ");
+
+				// Checking for duplicate usernames
+				if (parts[0].toLowerCase().equals("user")){
+					username = parts[1].toLowerCase();
+					boolean binary = WireProtocol.requestsBinary(parts);
+
+					// Claim the name, with --virtual several connections may be logging in the same name at once
+					if (!claimName(username)){
+						// Other user online is currently using the name, pick another name
+						os.println("usertaken Username is currently online, please log out before logging in");
+						os.flush();
+						continue;
+					}
+					try {
+						boolean[] isNew = {false};
+						ClientInfo info = clients.computeIfAbsent(username, name -> {
+							isNew[0] = true;
+							return new ClientInfo(name);
+						});
+						ConnectionHandler newConn = new ConnectionHandler(info, eventQueue, newClient);
+						// The reply goes through the connection the event handler will write to, so it is always the first message
+						// Its writer runs on the connection executor too, or on a thread of its own
+						ClientConnection conn = new SocketClientConnection(newClient, connectionExecutor);
+						// Username is free, can be used
+						if (!isNew[0]){
+							System.out.println(username + " has been online before");
+							info.setOnline(true);
+							conn.send(binary ? "Online before " + WireProtocol.HANDSHAKE_OPTION : "Online before");
+						}
+						else{
+							// The empty line after the reply would break the frames
+							conn.send(binary ? "login success " + WireProtocol.HANDSHAKE_OPTION : "login success \n");
+							// Should limit how many threads, need one for each active connection right now!
+							System.out.println("Thread created and started for " + username);
+						}
+						conn.flush();
+						if (binary) conn.useBinary();
+						userList.put(username, conn); // Add mapping username to online socket
+						return newConn;
+					} finally {
+						loggingIn.remove(username);
+					}
+
+				}
+				else{
+					// Invalid first message
+					os.println("Invalid command: user <username> required, connection is closed");
+					os.flush();
+					newClient.close();
+				}
+
+			} catch (IOException e1) {
+				// Connection probably broke?
+				e1.printStackTrace();
+				System.out.println("Connection broke");
+				return null;
+			}
+
+		}
+	}
+
+	/**
+	 * Reserve a name until its login reply is written and it is added to userList.
+	 * @param username
+	 * @return false if the name is online or another connection is logging it in
+	 */
+	private boolean claimName(String username) {
+		if (!loggingIn.add(username)) return false;
+		if (userList.containsKey(username)) {
+			loggingIn.remove(username);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Typing reload on the server console loads the puzzles again,
+	 * matches keep using the old puzzles until the new ones are loaded
+	 */
+	private void startReloadListener() {
+		Thread reloader = new Thread(() -> {
+			BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+			try {
+				String command;
+				while((command = console.readLine()) != null) {
+					if(command.trim().equalsIgnoreCase("reload")) {
+						PuzzleCatalog catalog = PuzzleCatalog.load();
+						evHandler.setCatalog(catalog);
+						System.out.println("Reloaded " + catalog.getNumPuzzles() + " puzzles");
+					}
+				}
+			} catch(IOException e) {
+				System.out.println("Server console closed");
+			}
+		}, "CatalogReloadThread");
+		reloader.setDaemon(true);
+		reloader.start();
+	}
+
 }
@@ -1,11 +1,14 @@
 import java.awt.*;
-import java.util.List;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
 
 
@@ -13,83 +16,292 @@ import java.util.concurrent.BlockingQueue;
  * Event handler class thread for RushHourServer
  *  - handles all incoming and outgoing messages
  *  - manages the state of the RushHourServer
+ * Several event handlers can share the clients, see ShardedEventHandler. Anything that
+ * changes the state of two users holds the locks of both users. The events of one user are
+ * handled in order, but the two players of a match may be handled by different event handlers.
+ * Their events are then not ordered relative to each other.
+ * The moves of a player are checked against the player's MatchBoard, then collected and
+ * sent to the opponent once per move tick, only the latest position of every vehicle that
+ * moved since the last tick is sent. A player only wins with "done" once the board is solved.
  */
 
 public class RushHourServerEV extends Thread{
-    private static BlockingQueue<String> eventQueue = null;
-    private static Map<String,ClientInfo> clients = null;
-    private static Map<String, Socket> userList = null;
-    private static Random rand;
-    private static PuzzleGame puzzleGame;
+    private final BlockingQueue<ServerEvent> eventQueue;
+    private final Map<String,ClientInfo> clients;
+    private final Map<String, ClientConnection> userList;
+    private final Random rand = new Random();
+    //locked when neither user exists
+    private static final Object NO_USER = new Object();
+    private volatile PuzzleCatalog catalog;
+    //most events handled before the messages written so far are flushed
+    private static final int MAX_EVENTS_PER_TICK = 64;
+    //connections written to since the last flush
+    private final Set<ClientConnection> unflushed = new LinkedHashSet<>();
+    //moves are sent to the opponent at most this often, set with -Dgridlock.moveTickMillis
+    private static final int MOVE_TICK_MILLIS = Integer.getInteger("gridlock.moveTickMillis", 100);
+    //moves of vehicles with a higher id are dropped
+    private static final int MAX_VEHICLES = 64;
+    //position of every vehicle a player moved since the last tick as row << 8 | col, -1 if it did not move
+    private final Map<String, int[]> pendingMoves = new HashMap<>();
+    //players with moves waiting for the next tick
+    private final Set<String> movers = new LinkedHashSet<>();
+    //vehicleId, row, col of the moves being sent, reused every tick
+    private final byte[] moveBytes = new byte[3 * MAX_VEHICLES];
+    private long nextMoveTick;
     
     /**
      * Rush hour event handler
-     * @param eventQueue Queue to receive the events
+     * @param eventQueue Queue to receive the events, already parsed by the connections
      * @param clients A map which manages the client information
      * @param userList A list of currently online users
+     * @param catalog The puzzles to play matches on
      */
 
-    public RushHourServerEV(BlockingQueue eventQueue,  Map<String,ClientInfo> clients, Map<String, Socket> userList){
+    public RushHourServerEV(BlockingQueue<ServerEvent> eventQueue,  Map<String,ClientInfo> clients, Map<String, ClientConnection> userList, PuzzleCatalog catalog){
         this.eventQueue = eventQueue;
         this.clients = clients;
         this.userList = userList;
-        this.rand = new Random();
-        this.puzzleGame = null;
+        this.catalog = catalog;
     }
 
     /**
-     * Main event handler thread function, determines what commands user have sent
+     * Matches started after this use the new catalog, can be called from any thread
+     * @param catalog
+     */
+    public void setCatalog(PuzzleCatalog catalog){
+        this.catalog = catalog;
+    }
+
+    /**
+     * Main event handler thread function, determines what commands user have sent.
+     * Events that are already waiting are handled together and the messages they send
+     * are flushed once at the end, one write per client instead of one per message.
+     * While moves are waiting it wakes up for the next move tick even if no event arrives.
      */
     @Override
     public void run(){
         System.out.println("Event handler thread started");
-        String currentLine;
-        String[] parts;
+        ServerEvent event;
         while (true){
             try{
-                currentLine = eventQueue.take();
-                System.out.println("Event Handler: processing " + currentLine);
-                // Parse commands
-                parts = currentLine.toLowerCase().trim().split(" ");
-
-                // Determine command
-                switch(parts[0]){
-                    case "getlist":
-                        getList(parts[1].toLowerCase());
-                        break;
-
-                    case "challenge":
-                        challenge(parts[1],parts[2]);
-                        break;
-
-                    case "accepted":
-                        acceptChallenge(parts[1],parts[2]);
-                        break;
-
-                    case "done":
-                        puzzleComplete(parts[1],parts[2]);
-                        break;
-
-                    case "offline":
-                        offlineUser(parts[1]);
-                        break;
-
-                    case "decline":
-                        declineUser(parts[1],parts[2]);
-                        break;
-
-                    case "forfeit":
-                        forfeit(parts[1],parts[2]);
-                        break;
-
-                    default:
-                        break;
+                if (movers.isEmpty()){
+                    event = eventQueue.take();
                 }
-
+                else{
+                    event = eventQueue.poll(Math.max(0, nextMoveTick - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+                }
+                if (event != null){
+                    handleEventSafely(event);
+                    for (int i = 1; i < MAX_EVENTS_PER_TICK && (event = eventQueue.poll()) != null; i++){
+                        handleEventSafely(event);
+                    }
+                }
+                if (!movers.isEmpty() && System.currentTimeMillis() >= nextMoveTick){
+                    sendMoves();
+                }
+                flush();
             }catch(InterruptedException e){
                 System.out.println("Event handler interrupted");
+            }catch(RuntimeException e){
+                // Other users depend on this thread, it has to keep running
+                System.out.println("Event handler failed to send");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Handles the event, an event that fails is dropped so it cannot stop the thread
+     * @param event
+     */
+    private void handleEventSafely(ServerEvent event){
+        try{
+            handleEvent(event);
+        }catch(RuntimeException e){
+            System.out.println("Event handler failed on " + event);
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Handles the command the user has sent
+     * @param event
+     */
+    private void handleEvent(ServerEvent event){
+        // Moves are too frequent to log
+        if (event.getType() == ServerEvent.Type.MOVE){
+            queueMove(event.getUser1(), event.getVehicleId(), event.getRow(), event.getCol());
+            return;
+        }
+        System.out.println("Event Handler: processing " + event);
+        String user1 = event.getUser1();
+        String user2 = event.getUser2();
+
+        // Determine command
+        switch(event.getType()){
+            case GETLIST:
+                getList(user1);
+                break;
+
+            case CHALLENGE:
+                withUsers(user1, user2, () -> challenge(user1, user2));
+                break;
+
+            case ACCEPTED:
+                withUsers(user1, user2, () -> acceptChallenge(user1, user2));
+                break;
+
+            case DONE:
+                withUsers(user1, user2, () -> puzzleComplete(user1, user2));
+                break;
+
+            case RESET:
+                queueReset(user1);
+                break;
+
+            case OFFLINE:
+                offline(user1);
+                pendingMoves.remove(user1);
+                movers.remove(user1);
+                break;
+
+            case DECLINE:
+                declineUser(user1, user2);
+                break;
+
+            case FORFEIT:
+                // The opponent is the one the server knows, not the name the client sent
+                withOpponent(user1, opponent -> forfeit(user1, opponent));
+                break;
+
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Runs the action while holding the locks of both users. The locks are always taken
+     * in the order of the usernames, so two handlers working on the same pair cannot deadlock.
+     * @param user1
+     * @param user2
+     * @param action
+     */
+    private void withUsers(String user1, String user2, Runnable action){
+        Object lock1 = clients.get(user1);
+        Object lock2 = clients.get(user2);
+        // A user that does not exist needs no lock, take the other lock twice instead
+        if (lock1 == null) lock1 = lock2 != null ? lock2 : NO_USER;
+        if (lock2 == null) lock2 = lock1;
+        if (user1.compareTo(user2) > 0){
+            Object swap = lock1;
+            lock1 = lock2;
+            lock2 = swap;
+        }
+        synchronized (lock1){
+            synchronized (lock2){
+                action.run();
+            }
+        }
+    }
+
+    /**
+     * Checks the move against the board of the player and keeps the latest position of the
+     * vehicle until the next move tick. Moves outside a match and illegal moves are dropped.
+     * @param user, the player that moved
+     * @param vehicleId
+     * @param row
+     * @param col
+     */
+    private void queueMove(String user, int vehicleId, int row, int col){
+        ClientInfo info = clients.get(user);
+        MatchBoard board = info == null ? null : info.getBoard();
+        if (board == null || vehicleId >= MAX_VEHICLES){
+            return;
+        }
+        if (!board.move(vehicleId, row, col)){
+            System.out.println("Illegal move from " + user + ": " + vehicleId + " to " + row + " " + col);
+            return;
+        }
+        pendPosition(user, vehicleId, row, col);
+    }
+
+    /**
+     * Puts the board of the player back in its initial state and sends every vehicle's
+     * position to the opponent at the next tick
+     * @param user
+     */
+    private void queueReset(String user){
+        ClientInfo info = clients.get(user);
+        MatchBoard board = info == null ? null : info.getBoard();
+        if (board == null){
+            return;
+        }
+        board.reset();
+        for (int id = 0; id < Math.min(board.getNumVehicles(), MAX_VEHICLES); id++){
+            pendPosition(user, id, board.getRow(id), board.getCol(id));
+        }
+    }
+
+    /**
+     * Keeps the position until the next move tick
+     * @pre 0 <= vehicleId < MAX_VEHICLES
+     */
+    private void pendPosition(String user, int vehicleId, int row, int col){
+        int[] positions = pendingMoves.get(user);
+        if (positions == null){
+            positions = new int[MAX_VEHICLES];
+            Arrays.fill(positions, -1);
+            pendingMoves.put(user, positions);
+        }
+        // The main vehicle can be one cell off the board, keep the row and col a byte each
+        positions[vehicleId] = (row & 0xFF) << 8 | (col & 0xFF);
+        if (movers.isEmpty()){
+            nextMoveTick = System.currentTimeMillis() + MOVE_TICK_MILLIS;
+        }
+        movers.add(user);
+    }
+
+    /**
+     * Sends the moves collected since the last tick to the opponent of every player that moved
+     */
+    private void sendMoves(){
+        for (String user : movers){
+            int[] positions = pendingMoves.get(user);
+            int length = 0;
+            for (int id = 0; id < MAX_VEHICLES; id++){
+                if (positions[id] == -1) continue;
+                moveBytes[length++] = (byte) id;
+                moveBytes[length++] = (byte) (positions[id] >> 8);
+                moveBytes[length++] = (byte) positions[id];
+                positions[id] = -1;
+            }
+            ClientInfo info = clients.get(user);
+            String opponent = info == null ? null : info.getPlayingAgainst();
+            ClientConnection receiver = opponent == null ? null : userList.get(opponent);
+            // Not in a match anymore, the moves are dropped
+            if (receiver == null) continue;
+            try{
+                receiver.sendMoves(moveBytes, length);
+                unflushed.add(receiver);
+            }catch(IOException e){
+                System.out.println("Connection to" + opponent + " created I/O exception");
+            }
+        }
+        movers.clear();
+    }
+
+    /**
+     * Write the messages sent since the last flush
+     */
+    private void flush(){
+        for (ClientConnection receiver : unflushed){
+            try{
+                receiver.flush();
+            }catch(IOException e){
+                System.out.println("Connection to " + receiver + " created I/O exception");
             }
         }
+        unflushed.clear();
     }
     
     /**
@@ -111,16 +323,20 @@ public class RushHourServerEV extends Thread{
     }
     
     /**
-     * Sends a messenger to designated user
+     * Sends a messenger to designated user, it is written at the next flush
      * @param username, name of the user
      * @param message, the Message to be sent
      */
 
     private void send(String username, String message){
-        Socket receiver = userList.get(username);
+        ClientConnection receiver = userList.get(username);
+        if (receiver == null){
+            System.out.println(username + " is offline, dropped " + message);
+            return;
+        }
         try{
-            PrintStream os = new PrintStream(receiver.getOutputStream());
-            os.println(message);
+            receiver.send(message);
+            unflushed.add(receiver);
         }catch(IOException e){
             System.out.println("Connection to" + username + " created I/O exception");
         }
@@ -177,6 +393,14 @@ public class RushHourServerEV extends Thread{
         send(user2, "accepted " + user2 + " " + user1);
         sendPuzzle(user1, user2);
     }
+
+    /**
+     * Ends the match on the server's boards of both players
+     */
+    private void clearBoards(ClientInfo usrInfo1, ClientInfo usrInfo2){
+        if (usrInfo1 != null) usrInfo1.setBoard(null);
+        if (usrInfo2 != null) usrInfo2.setBoard(null);
+    }
     
     /**
      * Sends a string representation of the puzzle to two given users
@@ -185,47 +409,61 @@ public class RushHourServerEV extends Thread{
      */
 
     private void sendPuzzle(String user1, String user2){
-        PuzzleGame newPuzzle = createPuzzle();
-        // Convert puzzle to String Format and send to both users
-        String puzzle = newPuzzle.getStringRep();
-        System.out.println("Puzzle output: " + puzzle);
+        // The catalog already holds the puzzles in the format of both protocols
+        PuzzleCatalog.Entry puzzle = catalog.getRandomPuzzle(rand);
+        if (puzzle == null){
+            System.out.println("No puzzles to send to " + user1 + " and " + user2);
+            return;
+        }
+        System.out.println("Puzzle output: " + puzzle.getText());
+        // Each player solves a copy of their own, checked move by move
+        clients.get(user1).setBoard(puzzle.newBoard());
+        clients.get(user2).setBoard(puzzle.newBoard());
 
         send(user1, "setopp " + user2);
         send(user2, "setopp " + user1);
 
-        send(user1, "puzzle " + puzzle);
-        send(user2, "puzzle " + puzzle);
+        sendPuzzle(user1, puzzle);
+        sendPuzzle(user2, puzzle);
     }
 
     /**
-     * Grab a random puzzle from very easy, easy, medium and hard
-     * Return the puzzle
-     * @return
+     * Sends a puzzle in the protocol of the user, it is written at the next flush
+     * @param username
+     * @param puzzle
      */
-    private PuzzleGame createPuzzle(){
-    	System.out.println("In CREATE PUZZLE");
-        GridlockGame game = new GridlockGame();
-//        puzzleGame = game.getPuzzle(0, 2);
-        int randomNum = (int )(Math.random() * 2 + 1);
-//        
-//
-        List<PuzzleGame> gameList = game.getPuzzles(randomNum);
-//        System.out.println(gameList.size());
-        int ran = (int )(Math.random() * gameList.size());
-        puzzleGame = gameList.get(ran);
-//        System.out.println(puzzleGame.getStringRep());
-
-//        System.out.println("random num" + randomNum + " " + ran);
-        return puzzleGame;
+    private void sendPuzzle(String username, PuzzleCatalog.Entry puzzle){
+        ClientConnection receiver = userList.get(username);
+        if (receiver == null){
+            System.out.println(username + " is offline, dropped the puzzle");
+            return;
+        }
+        try{
+            receiver.sendPuzzle(puzzle);
+            unflushed.add(receiver);
+        }catch(IOException e){
+            System.out.println("Connection to" + username + " created I/O exception");
+        }
     }
 
     // User1 finished puzzle
     private void puzzleComplete(String user1, String user2){
+        ClientInfo usrInfo1 = clients.get(user1);
+        ClientInfo usrInfo2 = clients.get(user2);
+        if (usrInfo1 == null || usrInfo2 == null || !user2.equals(usrInfo1.getPlayingAgainst())){
+            System.out.println("Rejected done from " + user1 + ", not playing against " + user2);
+            return;
+        }
+        // Only the moves the server has seen count
+        MatchBoard board = usrInfo1.getBoard();
+        if (board == null || !board.isSolved()){
+            System.out.println("Rejected done from " + user1 + ", the puzzle is not solved");
+            return;
+        }
         send(user2, "puzzledone by " + user1);
 
         // Update Client Info
-        ClientInfo usrInfo1 = clients.get(user1);
-        ClientInfo usrInfo2 = clients.get(user2);
+        clearBoards(usrInfo1, usrInfo2);
 
         usrInfo1.incrementWins();
         usrInfo2.incrementLosses();
@@ -239,49 +477,95 @@ public class RushHourServerEV extends Thread{
     }
 
     // forfeit
-    private void forfeit(String user1, String user2){
+    // returns false without changing anything if the user is no longer playing against lockedOpponent
+    private boolean forfeit(String user1, String lockedOpponent){
         ClientInfo info = clients.get(user1);
+        if (info == null){
+            return true;
+        }
+        String oppo = info.getPlayingAgainst();
+        if (oppo != null && !oppo.equals(lockedOpponent)){
+            return false;
+        }
         // Check if actually in-game
         if (info.isBusy()){
             info.setBusy(false);
-            String oppo = info.getPlayingAgainst();
             info.resetPlayingAgainst();
+            ClientInfo oppoInfo = oppo == null ? null : clients.get(oppo);
+            clearBoards(info, oppoInfo);
             // Increase loss count
             info.incrementLosses();
             sendStats(user1);
 
-            if (oppo != null){
-                send(user2, "forfeit " + user1);
-                ClientInfo OppoInfo = clients.get(user2);
-                OppoInfo.setBusy(false);
-                OppoInfo.resetPlayingAgainst();
-                OppoInfo.incrementWins();
+            if (oppoInfo != null && user1.equals(oppoInfo.getPlayingAgainst())){
+                send(oppo, "forfeit " + user1);
+                oppoInfo.setBusy(false);
+                oppoInfo.resetPlayingAgainst();
+                oppoInfo.incrementWins();
                 // Increase win count
-                sendStats(user2);
+                sendStats(oppo);
             }
+        }
+        return true;
+    }
 
-
+    /**
+     * Runs the action while holding the locks of the user and their opponent.
+     * The opponent is read before the locks are taken, so it is read again if it changed.
+     * @param user
+     * @param action, gets the opponent that is locked, null if there is none, and returns false
+     * if the user is no longer playing against it
+     */
+    private void withOpponent(String user, Predicate<String> action){
+        boolean[] done = {false};
+        while (!done[0]){
+            ClientInfo info = clients.get(user);
+            String opponent = info == null ? null : info.getPlayingAgainst();
+            withUsers(user, opponent == null ? user : opponent, () -> done[0] = action.test(opponent));
         }
     }
 
+    /**
+     * Sets the user offline while holding the locks of the user and their opponent.
+     * @param user
+     */
+    private void offline(String user){
+        withOpponent(user, opponent -> offlineUser(user, opponent));
+    }
+
     // Remove online mapping, set user offline
-    private void offlineUser(String user){
-        userList.remove(user);
+    // returns false without changing anything if the user is no longer playing against lockedOpponent
+    private boolean offlineUser(String user, String lockedOpponent){
         ClientInfo info = clients.get(user);
+        if (info == null){
+            userList.remove(user);
+            return true;
+        }
+        String opponent = info.getPlayingAgainst();
+        if (opponent != null && !opponent.equals(lockedOpponent)){
+            return false;
+        }
+        userList.remove(user);
 
         // Notify other user if they were ingame that other user disconnected, make them the winner
-        String opponent = info.getPlayingAgainst();
         if (opponent != null){
-            send(info.getPlayingAgainst(), "DC " + user + " has disconnected");
+            send(opponent, "DC " + user + " has disconnected");
             ClientInfo otherUser = clients.get(opponent);
-            info.resetPlayingAgainst();
-            info.setBusy(false);
+            // End the match for them too, otherwise they stay busy with no board to finish
+            if (otherUser != null && user.equals(otherUser.getPlayingAgainst())){
+                otherUser.setBoard(null);
+                otherUser.setBusy(false);
+                otherUser.resetPlayingAgainst();
+                otherUser.incrementWins();
+                sendStats(opponent);
+            }
         }
 
         info.setOnline(false);
         info.resetPlayingAgainst();
         info.setBusy(false);
-
+        info.setBoard(null);
+        return true;
     }
 
     private void declineUser(String user1, String user2){
@@ -0,0 +1,147 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Same protocol and event handler as RushHourServer, but the clients are served by a
+ * small fixed number of SelectorLoop threads instead of a ConnectionHandler thread each.
+ * The accept thread only accepts, the handshake is done by the loop of the client, so a
+ * slow client no longer holds up everyone else logging in.
+ */
+public class RushHourServerNIO {
+    public static final int DEFAULT_NUM_LOOPS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private final int port;
+    private final int numLoops;
+    private final BlockingQueue<ServerEvent> eventQueue;
+    private final Map<String,ClientInfo> clients;
+    private final Map<String, ClientConnection> userList;
+    //names claimed by a handshake that is still writing its reply, not in userList yet
+    private final Set<String> loggingIn = ConcurrentHashMap.newKeySet();
+    private ShardedEventHandler evHandler;
+
+    public static void main(String[] args) {
+        RushHourServerNIO server = new RushHourServerNIO(55555, DEFAULT_NUM_LOOPS);
+        server.run();
+    }
+
+    /**
+     * @pre numLoops > 0
+     * @param port
+     * @param numLoops, the number of threads serving the clients
+     */
+    public RushHourServerNIO(int port, int numLoops) {
+        this.port = port;
+        this.numLoops = numLoops;
+        this.userList = new ConcurrentHashMap<String, ClientConnection>();
+        this.clients = new ConcurrentHashMap<String, ClientInfo>();
+        this.eventQueue = new LinkedBlockingQueue<ServerEvent>();
+    }
+
+    /**
+     * Accepts clients until the server is stopped and hands them to the loops in turn
+     */
+    public void run() {
+        try (ServerSocketChannel server = ServerSocketChannel.open()) {
+            System.out.println("Starting server on port " + port);
+            server.bind(new InetSocketAddress(this.port));
+
+            PuzzleCatalog catalog = PuzzleCatalog.load();
+            System.out.println("Loaded " + catalog.getNumPuzzles() + " puzzles");
+            evHandler = new ShardedEventHandler(eventQueue, clients, userList, catalog, ShardedEventHandler.DEFAULT_NUM_SHARDS);
+            evHandler.start();
+
+            SelectorLoop[] loops = new SelectorLoop[this.numLoops];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new SelectorLoop(this, "SelectorLoop" + i);
+                loops[i].start();
+            }
+            for (int next = 0; ; next = (next + 1) % loops.length) {
+                SocketChannel client = server.accept();
+                System.out.println("New connection established" + client);
+                loops[next].addClient(client);
+            }
+        } catch (IOException e) {
+            System.out.println("I/O Exception: Issue starting up server");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Handles a line of a client that has not logged in yet, the same as RushHourServer.run.
+     * Called by the loop of the client.
+     * @param conn
+     * @param line
+     * @return the username once the client is logged in, otherwise null
+     */
+    String handshake(NioClientConnection conn, String line) {
+        String[] parts = (line.trim()).split(" ");
+        try {
+            if (parts.length < 2 || !parts[0].toLowerCase().equals("user")) {
+                // Invalid first message
+                conn.send("Invalid command: user <username> required, connection is closed");
+                conn.close();
+                return null;
+            }
+            String username = parts[1].toLowerCase();
+            boolean binary = WireProtocol.requestsBinary(parts);
+            // Claim the name, several loops may be logging in the same name at once
+            if (!claimName(username)) {
+                // Other user online is currently using the name, pick another name
+                conn.send("usertaken Username is currently online, please log out before logging in");
+                conn.flush();
+                return null;
+            }
+            try {
+                ClientInfo newInfo = new ClientInfo(username);
+                ClientInfo existingUser = clients.putIfAbsent(username, newInfo);
+                if (existingUser != null) {
+                    System.out.println(username + " has been online before");
+                    existingUser.setOnline(true);
+                    conn.send(binary ? "Online before " + WireProtocol.HANDSHAKE_OPTION : "Online before");
+                } else {
+                    // The empty line after the reply would break the frames
+                    conn.send(binary ? "login success " + WireProtocol.HANDSHAKE_OPTION : "login success \n");
+                    System.out.println("Client logged in " + username);
+                }
+                // Only added once the reply is buffered, so nothing the event handler sends can come before it
+                if (binary) conn.useBinary();
+                userList.put(username, conn);
+                conn.flush();
+                return username;
+            } finally {
+                loggingIn.remove(username);
+            }
+        } catch (IOException e) {
+            System.out.println("Connection broke");
+            return null;
+        }
+    }
+
+    /**
+     * Reserve a name until its login reply is buffered and it is added to userList.
+     * @param username
+     * @return false if the name is online or another loop is logging it in
+     */
+    private boolean claimName(String username) {
+        if (!loggingIn.add(username)) return false;
+        if (userList.containsKey(username)) {
+            loggingIn.remove(username);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Pass an event of a logged in client to the event handler
+     * @param event
+     */
+    void addEvent(ServerEvent event) {
+        this.eventQueue.add(event);
+    }
+}
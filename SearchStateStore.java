@@ -0,0 +1,133 @@
+import java.util.Arrays;
+
+/**
+ * Stores the search state of every node seen by a search, keyed by the node's long key.
+ * Uses open addressing and primitive arrays so a node costs a few dozen bytes
+ * instead of entries in a HashSet and two HashMaps.
+ * Nodes are given an index in the order they are added, the index is used to access
+ * the cost, parent and closed flag of the node.
+ */
+public class SearchStateStore {
+    public static final int NO_PARENT = -1;
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final long GOLDEN_RATIO = 0x9E3779B97F4A7C15L;
+    //node data, by index
+    private long[] keys;
+    private int[] gScore;
+    private int[] parent;
+    private boolean[] closed;
+    private int size;
+    //hash table of index + 1, 0 means the slot is empty
+    private int[] table;
+    private int mask;
+
+    public SearchStateStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public SearchStateStore(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 16) - 1) << 1;
+        this.keys = new long[capacity];
+        this.gScore = new int[capacity];
+        this.parent = new int[capacity];
+        this.closed = new boolean[capacity];
+        this.table = new int[capacity * 2];
+        this.mask = this.table.length - 1;
+        this.size = 0;
+    }
+
+    /**
+     * @param key
+     * @return the index of the node with the key or -1 if it has not been added
+     */
+    public int indexOf(long key) {
+        int slot = this.slot(key);
+        while (this.table[slot] != 0) {
+            int index = this.table[slot] - 1;
+            if (this.keys[index] == key) return index;
+            slot = (slot + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Add a node which has not been added yet.
+     * @pre indexOf(key) == -1
+     * @post indexOf(key) == size() - 1
+     * @param key
+     * @param g, the cost from the start to the node
+     * @param parent, index of the node this node was reached from, or NO_PARENT
+     * @return the index of the new node
+     */
+    public int add(long key, int g, int parent) {
+        if (this.size == this.keys.length) this.grow();
+        int index = this.size++;
+        this.keys[index] = key;
+        this.gScore[index] = g;
+        this.parent[index] = parent;
+        this.closed[index] = false;
+        this.insert(key, index);
+        return index;
+    }
+
+    public long getKey(int index) {
+        return this.keys[index];
+    }
+
+    public int getG(int index) {
+        return this.gScore[index];
+    }
+
+    public void setG(int index, int g) {
+        this.gScore[index] = g;
+    }
+
+    public int getParent(int index) {
+        return this.parent[index];
+    }
+
+    public void setParent(int index, int parent) {
+        this.parent[index] = parent;
+    }
+
+    public boolean isClosed(int index) {
+        return this.closed[index];
+    }
+
+    public void close(int index) {
+        this.closed[index] = true;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private int slot(long key) {
+        long h = key * GOLDEN_RATIO;
+        return (int) (h ^ (h >>> 32)) & this.mask;
+    }
+
+    private void insert(long key, int index) {
+        int slot = this.slot(key);
+        while (this.table[slot] != 0) {
+            slot = (slot + 1) & this.mask;
+        }
+        this.table[slot] = index + 1;
+    }
+
+    /**
+     * Double the capacity and rehash every key
+     */
+    private void grow() {
+        int capacity = this.keys.length * 2;
+        this.keys = Arrays.copyOf(this.keys, capacity);
+        this.gScore = Arrays.copyOf(this.gScore, capacity);
+        this.parent = Arrays.copyOf(this.parent, capacity);
+        this.closed = Arrays.copyOf(this.closed, capacity);
+        this.table = new int[capacity * 2];
+        this.mask = this.table.length - 1;
+        for (int i = 0; i < this.size; i++) {
+            this.insert(this.keys[i], i);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One thread of RushHourServerNIO, reads and writes every connection registered with it.
+ * Other threads never touch the selector directly, they hand work to the loop with execute().
+ */
+public class SelectorLoop extends Thread {
+    private final Selector selector;
+    private final Queue<Runnable> tasks;
+    private final RushHourServerNIO server;
+
+    public SelectorLoop(RushHourServerNIO server, String name) throws IOException {
+        super(name);
+        this.selector = Selector.open();
+        this.tasks = new ConcurrentLinkedQueue<>();
+        this.server = server;
+        this.setDaemon(true);
+    }
+
+    /**
+     * Run the task on the loop thread, can be called from any thread
+     * @param task
+     */
+    public void execute(Runnable task) {
+        this.tasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Start serving a newly accepted client, can be called from any thread
+     * @param channel
+     */
+    public void addClient(SocketChannel channel) {
+        this.execute(() -> {
+            try {
+                channel.configureBlocking(false);
+                NioClientConnection conn = new NioClientConnection(channel, this, this.server);
+                conn.setKey(channel.register(this.selector, SelectionKey.OP_READ, conn));
+            } catch (IOException e) {
+                System.out.println("Could not register " + channel);
+                try {
+                    channel.close();
+                } catch (IOException e1) {
+                    //already closed
+                }
+            }
+        });
+    }
+
+    @Override
+    public void run() {
+        while (!this.isInterrupted()) {
+            try {
+                this.selector.select();
+            } catch (IOException e) {
+                System.out.println("Selector failed");
+                e.printStackTrace();
+                return;
+            }
+            Runnable task;
+            while ((task = this.tasks.poll()) != null) {
+                task.run();
+            }
+            Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                NioClientConnection conn = (NioClientConnection) key.attachment();
+                if (key.isValid() && key.isWritable()) {
+                    conn.onWritable();
+                }
+                if (key.isValid() && key.isReadable()) {
+                    conn.onReadable();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * A line of a client, parsed once by the thread reading the connection so the event
+ * handler only switches on the type. Usernames are lowercased and interned, every event
+ * of a user refers to the same String.
+ */
+public class ServerEvent {
+    public enum Type {
+        GETLIST(1, 0), CHALLENGE(2, 0), ACCEPTED(2, 0), DONE(2, 0), OFFLINE(1, 0), DECLINE(2, 0), FORFEIT(2, 0),
+        //"move <sender> <vehicle id> <row> <col>", a vehicle of the sender's puzzle moved
+        MOVE(1, 3),
+        //"reset <sender>", the sender put the puzzle back in its initial state
+        RESET(1, 0);
+
+        //number of usernames following the command
+        private final int numUsers;
+        //number of integers following the usernames
+        private final int numInts;
+
+        Type(int numUsers, int numInts) {
+            this.numUsers = numUsers;
+            this.numInts = numInts;
+        }
+    }
+
+    //most words of any command
+    private static final int MAX_WORDS = 5;
+    private final Type type;
+    private final String user1;
+    private final String user2;
+    private final int vehicleId;
+    private final int row;
+    private final int col;
+
+    private ServerEvent(Type type, String user1, String user2, int vehicleId, int row, int col) {
+        this.type = type;
+        this.user1 = user1;
+        this.user2 = user2;
+        this.vehicleId = vehicleId;
+        this.row = row;
+        this.col = col;
+    }
+
+    /**
+     * Parse a line sent by a client, "<command> <sender> [<other user>]" or
+     * "move <sender> <vehicle id> <row> <col>"
+     * @param line
+     * @param sender, the user logged in on the connection the line came from
+     * @return the event, null if the command is unknown, a word is missing or not a number,
+     * or the line names another user as its sender
+     */
+    public static ServerEvent parse(String line, String sender) {
+        String[] words = new String[MAX_WORDS];
+        int numWords = 0;
+        int end = line.length();
+        for (int i = 0; i < end && numWords < words.length; ) {
+            if (line.charAt(i) == ' ') {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < end && line.charAt(i) != ' ') i++;
+            words[numWords++] = line.substring(start, i);
+        }
+        if (numWords == 0) return null;
+        Type type = getType(words[0]);
+        if (type == null || numWords < 1 + type.numUsers + type.numInts) return null;
+        // A client can only send events as itself
+        String user1 = intern(sender);
+        if (!intern(words[1]).equals(user1)) return null;
+        String user2 = type.numUsers > 1 ? intern(words[2]) : null;
+        int[] ints = new int[3];
+        try {
+            for (int i = 0; i < type.numInts; i++) {
+                ints[i] = Integer.parseInt(words[1 + type.numUsers + i]);
+            }
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        return new ServerEvent(type, user1, user2, ints[0], ints[1], ints[2]);
+    }
+
+    /**
+     * @param username
+     * @return the event sent for a user whose connection is gone
+     */
+    public static ServerEvent offline(String username) {
+        return new ServerEvent(Type.OFFLINE, intern(username), null, 0, 0, 0);
+    }
+
+    private static Type getType(String command) {
+        for (Type type : Type.values()) {
+            if (type.name().equalsIgnoreCase(command)) return type;
+        }
+        return null;
+    }
+
+    private static String intern(String username) {
+        return username.trim().toLowerCase().intern();
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * @return the user that sent the event
+     */
+    public String getUser1() {
+        return this.user1;
+    }
+
+    /**
+     * @return the other user of the event, null for events with one user
+     */
+    public String getUser2() {
+        return this.user2;
+    }
+
+    /**
+     * @return the vehicle that moved, only for MOVE
+     */
+    public int getVehicleId() {
+        return this.vehicleId;
+    }
+
+    public int getRow() {
+        return this.row;
+    }
+
+    public int getCol() {
+        return this.col;
+    }
+
+    @Override
+    public String toString() {
+        String line = this.type.name().toLowerCase() + " " + this.user1;
+        if (this.type == Type.MOVE) return line + " " + this.vehicleId + " " + this.row + " " + this.col;
+        return this.user2 == null ? line : line + " " + this.user2;
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Spreads the events of all clients over several RushHourServerEV threads, so one busy
+ * match no longer delays everyone else. Writing to a client never blocks an event handler,
+ * a client that falls too far behind is disconnected, see ClientConnection.flush.
+ * Every event names the user logged in on the connection it came from first, and all events of a user go to the same
+ * event handler, so the events of a user are handled in the order they were sent.
+ * The order is per user, not per match. The two players of a match may be handled by
+ * different event handlers, so their events are not ordered relative to each other, the
+ * same as for two sockets. The event handlers lock both users for anything that changes
+ * the state of both.
+ */
+public class ShardedEventHandler extends Thread {
+    public static final int DEFAULT_NUM_SHARDS = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private final BlockingQueue<ServerEvent> eventQueue;
+    private final RushHourServerEV[] shards;
+    private final List<BlockingQueue<ServerEvent>> shardQueues;
+
+    /**
+     * @pre numShards > 0
+     * @param eventQueue Queue to receive the events of all clients
+     * @param clients A map which manages the client information
+     * @param userList A list of currently online users
+     * @param catalog The puzzles to play matches on
+     * @param numShards The number of event handler threads
+     */
+    public ShardedEventHandler(BlockingQueue<ServerEvent> eventQueue, Map<String,ClientInfo> clients, Map<String, ClientConnection> userList, PuzzleCatalog catalog, int numShards){
+        super("EventDispatcher");
+        this.eventQueue = eventQueue;
+        this.shards = new RushHourServerEV[numShards];
+        this.shardQueues = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++){
+            this.shardQueues.add(new LinkedBlockingQueue<ServerEvent>());
+            this.shards[i] = new RushHourServerEV(this.shardQueues.get(i), clients, userList, catalog);
+        }
+    }
+
+    /**
+     * Matches started after this use the new catalog, can be called from any thread
+     * @param catalog
+     */
+    public void setCatalog(PuzzleCatalog catalog){
+        for (RushHourServerEV shard : this.shards){
+            shard.setCatalog(catalog);
+        }
+    }
+
+    /**
+     * Starts the event handlers and passes every event to the event handler of its user
+     */
+    @Override
+    public void run(){
+        for (RushHourServerEV shard : this.shards){
+            shard.start();
+        }
+        while (true){
+            try{
+                ServerEvent event = this.eventQueue.take();
+                int shard = Math.floorMod(event.getUser1().hashCode(), this.shards.length);
+                this.shardQueues.get(shard).add(event);
+            }catch(InterruptedException e){
+                System.out.println("Event dispatcher interrupted");
+            }
+        }
+    }
+}
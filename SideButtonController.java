@@ -11,16 +11,30 @@ public class SideButtonController implements ButtonController {
     private PuzzleView puzzleView;
     private PuzzleGame puzzleGame;
     private ButtonPanel bp;
+    //null when hints are turned off
+    private HintProvider hintProvider;
+    //called when a hint solves the puzzle, null if nothing has to happen
+    private ActionListener solvedListener;
 //    private JFrame menu;
 
     private long time;
 
 
     public SideButtonController(PuzzleView puzzleView, PuzzleGame puzzleGame, ButtonPanel bp) {
+        this(puzzleView, puzzleGame, bp, true);
+    }
+
+    /**
+     * @param hintsEnabled, false to hide the hint button, such as in a network match where
+     *                      a hint would play a move for the player
+     */
+    public SideButtonController(PuzzleView puzzleView, PuzzleGame puzzleGame, ButtonPanel bp, boolean hintsEnabled) {
         this.puzzleView = puzzleView;
         this.puzzleGame = puzzleGame;
         this.bp = bp;
         this.time = System.currentTimeMillis();
+        this.hintProvider = hintsEnabled ? new HintProvider(puzzleGame) : null;
+        bp.setHintVisible(hintsEnabled);
 //        this.menu = menu;
 
     }
@@ -83,7 +97,21 @@ public class SideButtonController implements ButtonController {
     public ActionListener getHintButtonListener() {
         ActionListener al = new ActionListener() {
             public void actionPerformed(ActionEvent evt) {
-                System.out.println("Hint button pressed!");
+                if (hintProvider == null) {
+                    return;
+                }
+                VehicleMove move = hintProvider.getHint(puzzleGame);
+                if (move == null) {
+                    JOptionPane.showMessageDialog(puzzleView, hintProvider.isReady() ? "No hint available"
+                            : "The hint is not ready yet, try again in a moment");
+                    return;
+                }
+                puzzleGame.moveVehicleState(move.getID(), move.getRow(), move.getCol());
+                bp.displayMoves(puzzleGame.getMoves());
+                updateView();
+                if (puzzleGame.isSolved() && solvedListener != null) {
+                    solvedListener.actionPerformed(evt);
+                }
             }
         };
         return al;
@@ -144,6 +172,13 @@ public class SideButtonController implements ButtonController {
 
     }
 
+    /**
+     * @param actionListener, called when a hint solves the puzzle
+     */
+    public void setSolvedListener(ActionListener actionListener) {
+        this.solvedListener = actionListener;
+    }
+
     public void resize(int newCellSize) {
         bp.resize(newCellSize);
     }
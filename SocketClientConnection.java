@@ -0,0 +1,183 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A client of the thread per connection RushHourServer, written to with a blocking socket stream.
+ * Messages are collected until flush(), which only queues them. A writer of its own writes the
+ * queue to the socket, so a client that reads slowly never blocks the event handler. A client
+ * that lets more than MAX_PENDING_BYTES pile up in the queue is disconnected, closing the
+ * socket also ends its ConnectionHandler, which tells the event handler it left.
+ */
+public class SocketClientConnection implements ClientConnection {
+    //queued by close(), the writer closes the socket when it gets to it
+    private static final byte[] END = new byte[0];
+    private final Socket socket;
+    //runs the writer, null to start a thread for it
+    private final ExecutorService writers;
+    //messages sent since the last flush
+    private final ByteArrayOutputStream unflushed;
+    private final BlockingQueue<byte[]> pending;
+    //bytes in pending that are not written yet
+    private final AtomicInteger pendingBytes;
+    private boolean binary;
+    private boolean writerStarted;
+    private volatile boolean closed;
+
+    public SocketClientConnection(Socket socket) {
+        this(socket, null);
+    }
+
+    /**
+     * @param socket
+     * @param writers, runs the writer of the connection, null to start a thread for it
+     */
+    public SocketClientConnection(Socket socket, ExecutorService writers) {
+        this.socket = socket;
+        this.writers = writers;
+        this.unflushed = new ByteArrayOutputStream();
+        this.pending = new LinkedBlockingQueue<>();
+        this.pendingBytes = new AtomicInteger(0);
+    }
+
+    @Override
+    public synchronized void send(String message) throws IOException {
+        if (this.binary) {
+            this.buffer(WireProtocol.encodeText(message));
+        } else {
+            this.buffer((message + System.lineSeparator()).getBytes(StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    @Override
+    public synchronized void sendPuzzle(PuzzleCatalog.Entry puzzle) throws IOException {
+        if (this.binary) {
+            this.buffer(puzzle.getFrame());
+        } else {
+            this.send("puzzle " + puzzle.getText());
+        }
+    }
+
+    @Override
+    public synchronized void sendMoves(byte[] moves, int length) throws IOException {
+        if (this.binary) {
+            this.buffer(WireProtocol.encodeMoves(moves, length));
+        } else {
+            this.send(WireProtocol.movesToText(moves, length));
+        }
+    }
+
+    @Override
+    public synchronized void useBinary() {
+        this.binary = true;
+    }
+
+    private void buffer(byte[] bytes) throws IOException {
+        if (this.closed) {
+            throw new IOException("Connection is closed");
+        }
+        this.unflushed.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Queues the messages as one write for the writer, never blocks on the socket
+     * @throws IOException if the connection is closed, or the client is too far behind and is disconnected
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        if (this.unflushed.size() == 0) return;
+        if (this.closed) {
+            throw new IOException("Connection is closed");
+        }
+        int size = this.unflushed.size();
+        if (this.pendingBytes.addAndGet(size) > MAX_PENDING_BYTES) {
+            this.unflushed.reset();
+            this.closeNow();
+            throw new IOException("Client is too far behind, disconnecting " + this.socket);
+        }
+        this.pending.add(this.unflushed.toByteArray());
+        this.unflushed.reset();
+        this.startWriter();
+    }
+
+    /**
+     * Flush and close the socket once the writer has written everything queued
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            this.flush();
+        } catch (IOException e) {
+            //closed anyway
+        }
+        if (this.closed) return;
+        this.closed = true;
+        if (this.writerStarted) {
+            this.pending.add(END);
+        } else {
+            this.closeSocket();
+        }
+    }
+
+    private void startWriter() {
+        if (this.writerStarted) return;
+        this.writerStarted = true;
+        if (this.writers != null) {
+            this.writers.execute(this::writeAll);
+        } else {
+            Thread writer = new Thread(this::writeAll, "Writer " + this.socket);
+            writer.setDaemon(true);
+            writer.start();
+        }
+    }
+
+    /**
+     * The writer, writes the queue to the socket until the connection is closed or breaks
+     */
+    private void writeAll() {
+        try {
+            OutputStream out = this.socket.getOutputStream();
+            byte[] bytes;
+            while ((bytes = this.pending.take()) != END) {
+                out.write(bytes);
+                this.pendingBytes.addAndGet(-bytes.length);
+            }
+        } catch (IOException e) {
+            if (!this.closed) System.out.println("Error writing to " + this.socket);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.closeNow();
+        }
+    }
+
+    /**
+     * Close without writing what is still queued
+     */
+    private void closeNow() {
+        this.closed = true;
+        this.pending.clear();
+        // Wakes the writer if it is waiting for the queue
+        this.pending.add(END);
+        this.closeSocket();
+    }
+
+    private void closeSocket() {
+        try {
+            this.socket.close();
+        } catch (IOException e) {
+            System.out.println("Error closing " + this.socket);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.socket.toString();
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * Explores every state that can be reached from a puzzle and calculates the exact
+ * number of moves from each of them to the goal.
+ * Every move costs 1 and can be undone, so one breadth first search from all the
+ * solved states gives the distances of the whole state space at once. After that the
+ * distance and the best next move of any state of the puzzle are a single lookup.
+ */
+public class StateSpaceExplorer {
+    public static final int UNSOLVABLE = -1;
+    private final PuzzleLayout layout;
+    //distance to the goal as gScore and the next state towards the goal as parent
+    private final SearchStateStore states;
+    private final int numSolved;
+
+    /**
+     * Explore the state space of the game, may take a while for difficult puzzles.
+     * @pre PuzzleLayout.canEncode(game)
+     * @post true
+     * @param game
+     */
+    public StateSpaceExplorer(PuzzleGame game) {
+        this.layout = new PuzzleLayout(game);
+        this.states = new SearchStateStore();
+        long[] successors = new long[this.layout.getMaxSuccessors()];
+
+        //find every reachable state, the store keeps them in the order they are found
+        this.states.add(this.layout.encode(game), UNSOLVABLE, SearchStateStore.NO_PARENT);
+        for (int index = 0; index < this.states.size(); index++) {
+            int numSuccessors = this.layout.getSuccessors(this.states.getKey(index), successors);
+            for (int i = 0; i < numSuccessors; i++) {
+                if (this.states.indexOf(successors[i]) == -1) {
+                    this.states.add(successors[i], UNSOLVABLE, SearchStateStore.NO_PARENT);
+                }
+            }
+        }
+
+        //search backwards from every solved state
+        int[] queue = new int[this.states.size()];
+        int head = 0;
+        int tail = 0;
+        for (int index = 0; index < this.states.size(); index++) {
+            if (this.layout.isSolved(this.states.getKey(index))) {
+                this.states.setG(index, 0);
+                queue[tail++] = index;
+            }
+        }
+        this.numSolved = tail;
+        while (head < tail) {
+            int index = queue[head++];
+            int distance = this.states.getG(index) + 1;
+            int numSuccessors = this.layout.getSuccessors(this.states.getKey(index), successors);
+            for (int i = 0; i < numSuccessors; i++) {
+                int next = this.states.indexOf(successors[i]);
+                if (this.states.getG(next) == UNSOLVABLE) {
+                    this.states.setG(next, distance);
+                    this.states.setParent(next, index);
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param game
+     * @return true if the current state of the game was found by this explorer
+     */
+    public boolean contains(PuzzleGame game) {
+        return this.indexOf(game) != -1;
+    }
+
+    /**
+     * @param game
+     * @return the minimum number of moves to solve the game from its current state,
+     * UNSOLVABLE if it cannot be solved or is not part of this state space
+     */
+    public int getDistanceToGoal(PuzzleGame game) {
+        int index = this.indexOf(game);
+        if (index == -1) return UNSOLVABLE;
+        return this.states.getG(index);
+    }
+
+    /**
+     * @param game
+     * @return the first move of a shortest solution from the current state of the game,
+     * null if the game is solved, cannot be solved or is not part of this state space
+     */
+    public VehicleMove getBestNextMove(PuzzleGame game) {
+        int index = this.indexOf(game);
+        if (index == -1) return null;
+        int next = this.states.getParent(index);
+        if (next == SearchStateStore.NO_PARENT) return null;
+        return this.layout.getMove(this.states.getKey(index), this.states.getKey(next));
+    }
+
+    /**
+     * @return the minimum number of moves to solve the puzzle from the state it was explored from
+     */
+    public int getMinMoves() {
+        return this.states.getG(0);
+    }
+
+    /**
+     * @return the number of states reachable from the puzzle
+     */
+    public int getNumStates() {
+        return this.states.size();
+    }
+
+    /**
+     * @return the number of reachable states that are solved
+     */
+    public int getNumSolvedStates() {
+        return this.numSolved;
+    }
+
+    public PuzzleLayout getLayout() {
+        return this.layout;
+    }
+
+    /**
+     * Returns the index of the state of the game or -1 if the game has different
+     * vehicles or the state was not reached.
+     */
+    private int indexOf(PuzzleGame game) {
+        if (game.getExitRow() != this.layout.getExitRow() || game.getExitCol() != this.layout.getExitCol()) return -1;
+        if (game.getVehicles().size() != this.layout.getNumVehicles()) return -1;
+        for (int i = 0; i < this.layout.getNumVehicles(); i++) {
+            Vehicle v = game.getVehicle(this.layout.getId(i));
+            if (v == null || v.getIsVertical() != this.layout.isVertical(i)
+                    || v.getLength() != this.layout.getLength(i)
+                    || (v.getIsVertical() ? v.getCol() : v.getRow()) != this.layout.getLane(i)) {
+                return -1;
+            }
+        }
+        return this.states.indexOf(this.layout.encode(game));
+    }
+}
@@ -0,0 +1,36 @@
+/**
+ * A single move of a vehicle to a new location on the board
+ */
+public class VehicleMove {
+    private final int id;
+    private final int row;
+    private final int col;
+
+    /**
+     * @param id, id of the vehicle to move
+     * @param row, the new row of the vehicle
+     * @param col, the new column of the vehicle
+     */
+    public VehicleMove(int id, int row, int col) {
+        this.id = id;
+        this.row = row;
+        this.col = col;
+    }
+
+    public int getID() {
+        return this.id;
+    }
+
+    public int getRow() {
+        return this.row;
+    }
+
+    public int getCol() {
+        return this.col;
+    }
+
+    @Override
+    public String toString() {
+        return "" + this.id + "," + this.row + "," + this.col;
+    }
+}
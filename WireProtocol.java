@@ -0,0 +1,163 @@
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Framed binary messages from the server to the client.
+ *
+ * A client asks for it by adding HANDSHAKE_OPTION to its user command, "user <name> binary1",
+ * and the server adds the same word to its login reply when it agrees. Everything the server
+ * sends after the login reply is then framed as
+ *   int length, byte type, payload
+ * where length counts the type and the payload. A TEXT frame holds one line of the text
+ * protocol in UTF-8, a PUZZLE frame holds a CompactPuzzleFormat record instead of the
+ * getStringRep string and a MOVES frame holds byte vehicleId, byte row, byte col for every
+ * vehicle of the opponent that moved, instead of the "oppmoves" line.
+ * Clients and servers that do not know the option keep using lines.
+ */
+public class WireProtocol {
+    public static final int VERSION = 1;
+    public static final String HANDSHAKE_OPTION = "binary" + VERSION;
+    public static final byte TEXT = 1;
+    public static final byte PUZZLE = 2;
+    public static final byte MOVES = 3;
+    public static final String MOVES_COMMAND = "oppmoves";
+    //a longer frame means the stream is broken
+    public static final int MAX_FRAME_LENGTH = 1 << 16;
+
+    private WireProtocol() {
+    }
+
+    /**
+     * @param parts, the words of the user command
+     * @return whether the client asked for framed messages
+     */
+    public static boolean requestsBinary(String[] parts) {
+        return parts.length > 2 && parts[2].equalsIgnoreCase(HANDSHAKE_OPTION);
+    }
+
+    /**
+     * @param reply, the login reply of the server
+     * @return whether the server agreed to send framed messages
+     */
+    public static boolean acceptsBinary(String reply) {
+        for (String word : reply.trim().split(" ")) {
+            if (word.equalsIgnoreCase(HANDSHAKE_OPTION)) return true;
+        }
+        return false;
+    }
+
+    public static byte[] encodeText(String line) {
+        return frame(TEXT, line.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param puzzle
+     * @return the PUZZLE frame of the puzzle as it is now
+     */
+    public static byte[] encodePuzzle(PuzzleGame puzzle) {
+        ByteBuffer record = ByteBuffer.allocate(CompactPuzzleFormat.getRecordSize(puzzle.getVehicles().size()));
+        CompactPuzzleFormat.writePuzzle(puzzle, record);
+        return frame(PUZZLE, record.array());
+    }
+
+    /**
+     * @param moves, vehicleId, row, col of every move
+     * @param length, the number of bytes of moves to send
+     * @return the MOVES frame
+     */
+    public static byte[] encodeMoves(byte[] moves, int length) {
+        return frame(MOVES, moves, length);
+    }
+
+    /**
+     * @param moves, vehicleId, row, col of every move
+     * @param length, the number of bytes of moves to send
+     * @return the "oppmoves" line of the text protocol
+     */
+    public static String movesToText(byte[] moves, int length) {
+        StringBuilder line = new StringBuilder(MOVES_COMMAND);
+        for (int i = 0; i < length; i++) {
+            line.append(' ').append(moves[i]);
+        }
+        return line.toString();
+    }
+
+    private static byte[] frame(byte type, byte[] payload) {
+        return frame(type, payload, payload.length);
+    }
+
+    private static byte[] frame(byte type, byte[] payload, int length) {
+        ByteBuffer out = ByteBuffer.allocate(Integer.BYTES + Byte.BYTES + length);
+        out.putInt(Byte.BYTES + length);
+        out.put(type);
+        out.put(payload, 0, length);
+        return out.array();
+    }
+
+    /**
+     * Read the next frame, blocks until all of it has arrived.
+     * @param in
+     * @return the frame, null if the server closed the connection
+     * @throws IOException if the connection broke or the frame is malformed
+     */
+    public static Frame readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < Byte.BYTES || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Bad frame length " + length);
+        }
+        byte type = in.readByte();
+        byte[] payload = new byte[length - Byte.BYTES];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    /**
+     * One message received from the server
+     */
+    public static class Frame {
+        private final byte type;
+        private final byte[] payload;
+
+        private Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        public byte getType() {
+            return this.type;
+        }
+
+        /**
+         * @pre getType() == TEXT
+         * @return the line
+         */
+        public String getText() {
+            return new String(this.payload, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @pre getType() == PUZZLE
+         * @return the puzzle in its initial state
+         * @throws IOException if the record is cut short
+         */
+        public PuzzleGame getPuzzle() throws IOException {
+            return CompactPuzzleFormat.readPuzzle(ByteBuffer.wrap(this.payload));
+        }
+
+        /**
+         * @pre getType() == MOVES
+         * @return vehicleId, row, col of every move
+         */
+        public byte[] getMoves() {
+            return this.payload;
+        }
+    }
+}